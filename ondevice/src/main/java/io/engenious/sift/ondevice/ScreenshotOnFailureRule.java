@@ -14,30 +14,40 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.util.regex.Pattern;
 
 public class ScreenshotOnFailureRule extends TestWatcher {
     private static final String TAG = ScreenshotOnFailureRule.class.getSimpleName();
-    private static final String SCREENSHOT_FILE = "failure.png";
+    private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^A-Za-z0-9._-]");
     private final Object lock = new Object();
 
     @GuardedBy("lock")
     private boolean enabled = true;
 
-    private void screenshot() {
+    private void screenshot(Description description) {
         synchronized (lock) {
             if (enabled) {
                 enabled = false;
-                takeScreenshot();
+                takeScreenshot(screenshotFileName(description));
             }
         }
     }
 
-    private static void takeScreenshot() {
+    /**
+     * Each test has its own file, as the runner collects screenshots of several tests executed in one instrumentation
+     * run only after all of them are finished. Must match the name expected by the runner.
+     */
+    private static String screenshotFileName(Description description) {
+        String name = "failure-" + description.getClassName() + "-" + description.getMethodName();
+        return UNSAFE_FILE_NAME_CHARS.matcher(name).replaceAll("_") + ".png";
+    }
+
+    private static void takeScreenshot(String fileName) {
         try {
             Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
 
 //            @SuppressWarnings("deprecation")
-            File screenFile = new File(Environment.getExternalStorageDirectory(), SCREENSHOT_FILE);
+            File screenFile = new File(Environment.getExternalStorageDirectory(), fileName);
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
                 // Filesystem access for shell commands is not limited on Android 9+,
                 // so the most reliable way to take a screenshot is using them
@@ -71,6 +81,6 @@ public class ScreenshotOnFailureRule extends TestWatcher {
 
     @Override
     protected void failed(Throwable e, Description description) {
-        screenshot();
+        screenshot(description);
     }
 }
@@ -18,12 +18,33 @@ data class Config(
     private val testPackage: String,
     private val outputDirectoryPath: String = "sift-result",
     private val testRetryLimit: Int,
-    private val testsBucket: Int = 1, // TODO: implement this option
+    private val testsBucket: Int = 1,
     private val globalRetryLimit: Int,
     private val reportTitle: String = "Test report",
     private val reportSubtitle: String = " ",
     private val testsExecutionTimeout: Int,
     private val environmentVariables: Map<String, String> = emptyMap(),
+    private val deviceSetupConcurrency: Int = 0,
+    /**
+     * Keep nodes running between runs, so that next runs with the same binaries and configuration reuse them
+     */
+    private val keepNodesWarm: Boolean = false,
+    /**
+     * Post results to the Orchestrator while the run is going, not only when it is finished
+     */
+    private val postResultsLive: Boolean = false,
+    /**
+     * Maximum number of logcat messages of a test kept in memory, 0 means the default of 10000
+     */
+    private val logcatMemoryLimit: Int = 0,
+    /**
+     * Logcat messages below this level (verbose, debug, info, warn, error or assert) are not captured
+     */
+    private val logcatMinLevel: String? = null,
+    /**
+     * Logcat messages with these tags are not captured
+     */
+    private val logcatExcludedTags: List<String> = emptyList(),
 //    private val setUpScriptPath: String, // TODO: implement this option
 //    private val tearDownScriptPath: String, // TODO: implement this option
 
@@ -55,6 +76,20 @@ data class Config(
             get() = resolvedConfig.reportTitle
         val reportSubtitle: String
             get() = resolvedConfig.reportSubtitle
+        val deviceSetupConcurrency: Int
+            get() = resolvedConfig.deviceSetupConcurrency
+        val testsBucket: Int
+            get() = resolvedConfig.testsBucket
+        val keepNodesWarm: Boolean
+            get() = resolvedConfig.keepNodesWarm
+        val postResultsLive: Boolean
+            get() = resolvedConfig.postResultsLive
+        val logcatMemoryLimit: Int
+            get() = resolvedConfig.logcatMemoryLimit
+        val logcatMinLevel: String?
+            get() = resolvedConfig.logcatMinLevel
+        val logcatExcludedTags: List<String>
+            get() = resolvedConfig.logcatExcludedTags
 
         open val nodes: List<NodeConfig.WithInjectedCentralNodeVars> by lazy {
             resolvedConfig.nodes.map {
@@ -2,6 +2,7 @@ package io.engenious.sift
 
 import com.android.ddmlib.IDevice
 import com.android.ddmlib.IDevice.MNT_EXTERNAL_STORAGE
+import com.android.ddmlib.NullOutputReceiver
 import com.github.tarcv.tongs.api.result.FileType
 import com.github.tarcv.tongs.api.result.ImageReportData
 import com.github.tarcv.tongs.api.result.TestCaseFile
@@ -11,15 +12,23 @@ import com.github.tarcv.tongs.api.run.TestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
-import com.github.tarcv.tongs.system.adb.CollectingShellOutputReceiver
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.model.AndroidDevice
+import io.engenious.sift.run.LiveResultPublisher
 import io.engenious.sift.run.ResultData
 import io.engenious.sift.run.RunData
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import java.io.File
-
-class ResultCollectingPlugin :
-    Conveyor.Plugin<RunData, ResultData>(), TestCaseRunRuleFactory<TestCaseRunRule> {
+import java.util.UUID
+import java.util.concurrent.CompletableFuture
+
+/**
+ * @param livePublisher publishes results while the run is still going
+ */
+class ResultCollectingPlugin(
+    private val livePublisher: LiveResultPublisher? = null
+) : Conveyor.Plugin<RunData, ResultData>(), TestCaseRunRuleFactory<TestCaseRunRule> {
     // This plugin should not advance the conveyor by itself,
     // instead the conveyor is advanced automatically once the current test run is complete
 
@@ -28,6 +37,7 @@ class ResultCollectingPlugin :
     }
 
     override fun initStorage(): ResultData = ResultData(previousStorage.runId)
+        .also { livePublisher?.start(it) }
 }
 
 open class ResultCollectingTestCaseRunRule(
@@ -36,11 +46,23 @@ open class ResultCollectingTestCaseRunRule(
     private val context: TestCaseRunRuleContext
 ) : TestCaseRunRule {
     private val device = context.device.deviceInterface as? IDevice
-    private val screenshotPath = "${device?.getMountPoint(MNT_EXTERNAL_STORAGE)}/failure.png"
+    private val androidDevice = context.device as? AndroidDevice
+    private val screenshotPath = "${device?.getMountPoint(MNT_EXTERNAL_STORAGE)}/" +
+        screenshotFileName(context.testCaseEvent.testCase)
     private val screenshotDataName = "Failure screenshot"
 
     companion object {
         private val logger: Logger = LoggerFactory.getLogger(ResultCollectingPlugin::class.java)
+
+        private val unsafeFileNameChars = Regex("[^A-Za-z0-9._-]")
+
+        /**
+         * Each test case has its own screenshot, so that test cases executed in one bucket don't overwrite
+         * screenshots of each other. Must match the name used by io.engenious.sift.ondevice.ScreenshotOnFailureRule.
+         */
+        internal fun screenshotFileName(testCase: TestCase): String {
+            return "failure-${testCase.testClass}-${testCase.testMethod}".replace(unsafeFileNameChars, "_") + ".png"
+        }
     }
 
     override fun after(arguments: TestCaseRunRuleAfterArguments) {
@@ -50,13 +72,15 @@ open class ResultCollectingTestCaseRunRule(
 
         val status = Status.fromTestCaseRunResult(arguments.result)
         logger.info("RUN after test status $status")
+        var screenshotPull: CompletableFuture<Boolean>? = null
         val screenshot = if (status == Status.FAILED || status == Status.ERRORED) {
             val attemptIndex = arguments.result.totalFailureCount
 
-            if (device != null) { // is a local device
-                pullScreenshot(device, attemptIndex.toString())?.let {
-                    addScreenshotToHtmlReport(it, arguments)
-                    it.toFile()
+            if (device != null && androidDevice != null) { // is a local device
+                pullScreenshot(device, androidDevice, attemptIndex.toString())?.let { (localFile, pull) ->
+                    screenshotPull = pull
+                    addScreenshotToHtmlReport(localFile, arguments)
+                    localFile.toFile()
                 }
             } else {
                 arguments.result.data
@@ -70,10 +94,18 @@ open class ResultCollectingTestCaseRunRule(
             null
         }
 
-        testResults[testIdentifier] = FilledTestResult(
+        val filledResult = FilledTestResult(
             key,
             Result.fromTestCaseRunResult(arguments.result, screenshot)
         )
+        testResults[testIdentifier] = filledResult
+
+        screenshotPull?.thenAccept { isPulled ->
+            // A new object, so that the result is published again now that the screenshot is available.
+            // The result is not replaced when a retry of the test has already replaced it.
+            val updatedResult = filledResult.result.copy(screenshot = screenshot.takeIf { isPulled })
+            testResults.replace(testIdentifier, filledResult, FilledTestResult(key, updatedResult))
+        }
     }
 
     private fun addScreenshotToHtmlReport(
@@ -87,32 +119,55 @@ open class ResultCollectingTestCaseRunRule(
         arguments.result = arguments.result.copy(data = listOf(screenshotData) + arguments.result.data)
     }
 
-    private fun pullScreenshot(deviceInterface: IDevice, nameSuffix: String) = try {
+    /**
+     * Moves the screenshot aside right away, so that the next test case doesn't remove it, and pulls it in background
+     * @return the local file and a future telling whether the screenshot was pulled, null when there is no screenshot
+     */
+    private fun pullScreenshot(
+        deviceInterface: IDevice,
+        androidDevice: AndroidDevice,
+        nameSuffix: String
+    ): Pair<TestCaseFile, CompletableFuture<Boolean>>? {
+        val pendingPath = "${screenshotPath.removeSuffix(".png")}-${UUID.randomUUID()}.png"
+        val isMoved = try {
+            androidDevice.commandBatch.execute("mv $screenshotPath $pendingPath").isSuccessful
+        } catch (e: Exception) {
+            logger.error("Failed to move the failure screenshot $screenshotPath: ${e.message}")
+            false
+        }
+        if (!isMoved) {
+            return null
+        }
+
         val localFile = context.fileManager.testCaseFile(
             ScreenshotFileType,
             nameSuffix
         )
-        deviceInterface.apply {
-            pullFile(screenshotPath, localFile.create().absolutePath)
+        val isPulled = CompletableFuture<Boolean>()
+        androidDevice.artifacts.submit("pull the failure screenshot") {
+            try {
+                deviceInterface.pullFile(pendingPath, localFile.create().absolutePath)
+                logger.debug("Pulled the failure screenshot {}", pendingPath)
+                isPulled.complete(true)
+            } catch (e: Exception) {
+                logger.error("Failed to pull the failure screenshot {}", pendingPath, e)
+                isPulled.complete(false)
+            } finally {
+                deviceInterface.executeShellCommand("rm -f $pendingPath", NullOutputReceiver())
+            }
         }
-        logger.info("RUN pullScreenshot pullFile done")
-        localFile
-    } catch (e: Exception) {
-        logger.error("Failed to pull the failure screenshot $screenshotPath: ${e.message}") // TODO: convert to log call
-        e.printStackTrace(System.err)
-        null
+        return localFile to isPulled
     }
 
     override fun before() {
-        device ?: return
+        // Commands batched by Android rules are already executed at this point, so this one is executed right away.
+        // A missing screenshot is not an error.
         try {
-            device.executeShellCommand(
-                "rm $screenshotPath",
-                CollectingShellOutputReceiver()
-            )
+            androidDevice
+                ?.commandBatch
+                ?.execute("rm -f $screenshotPath")
         } catch (e: Exception) {
-            logger.error("Failed to remove old screenshot: ${e.message}")
-            e.printStackTrace(System.err)
+            logger.error("Failed to remove the old failure screenshot {}", screenshotPath, e)
         }
     }
 }
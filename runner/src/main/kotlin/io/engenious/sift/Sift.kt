@@ -31,6 +31,7 @@ import io.engenious.sift.list.NoOpPlugin
 import io.engenious.sift.node.central.plugin.RemoteNodeDevicePlugin
 import io.engenious.sift.node.central.plugin.RemoteNodeDeviceRunnerPlugin
 import io.engenious.sift.node.remote.NodeCommand
+import io.engenious.sift.run.LiveResultPublisher
 import io.engenious.sift.run.RunData
 import kotlinx.serialization.SerializationException
 import org.slf4j.Logger
@@ -287,6 +288,11 @@ abstract class Sift : Runnable {
             val siftClient by lazy {
                 options.createClient()
             }
+            val livePublisher = if (centralConfig.postResultsLive) {
+                LiveResultPublisher { siftClient.postResults(options.testPlan, it) }
+            } else {
+                null
+            }
             val deviceRule = RemoteNodeDevicePlugin(
                 centralConfig.withNodes(nodes = centralConfig.nodes.filterNot(::isLocalhostNode))
             )
@@ -334,7 +340,7 @@ abstract class Sift : Runnable {
                         }
                     },
                     FilteringTestCasePlugin,
-                    ResultCollectingPlugin(),
+                    ResultCollectingPlugin(livePublisher),
                     { result, ctx ->
                         if (result.runId == noRunId) {
                             return@prepare
@@ -344,7 +350,11 @@ abstract class Sift : Runnable {
                             ctx.throwDeferred(RuntimeException("The run produced no results"))
                             return@prepare
                         }
-                        siftClient.postResults(options.testPlan, result)
+                        if (livePublisher != null) {
+                            livePublisher.finish()
+                        } else {
+                            siftClient.postResults(options.testPlan, result)
+                        }
                     }
                 )
                 .addRule(deviceRule)
@@ -449,6 +459,11 @@ internal fun Configuration.Builder.setupCommonTongsConfiguration(config: Config.
     withOutput(File(config.outputDirectoryPath))
     withCoverageEnabled(false)
     withDdmTermination(true)
+    withDeviceSetupConcurrency(config.deviceSetupConcurrency)
+    withTestsBucket(config.testsBucket)
+    withLogcatMemoryLimit(config.logcatMemoryLimit)
+    withLogcatMinLevel(config.logcatMinLevel)
+    withLogcatExcludedTags(config.logcatExcludedTags)
     return this
 }
 
@@ -0,0 +1,145 @@
+package io.engenious.sift.node.central.plugin
+
+import org.slf4j.LoggerFactory
+import java.nio.file.Files
+import java.nio.file.Path
+import java.security.MessageDigest
+
+/**
+ * Content-addressed store of binaries deployed to a node.
+ *
+ * Files are kept in [storeDirectory] named by their SHA-256 hash, so unchanged files are never uploaded again.
+ * Interrupted uploads are kept as '.part' files and resumed on the next run.
+ */
+internal class DeploymentStore(
+    private val session: SshSession,
+    private val deploymentPath: String
+) {
+    /**
+     * Uploads missing files to the store and links them to the specified paths relative to the deployment path
+     * @return fingerprint of the deployed files
+     */
+    fun deploy(vararg pairs: Pair<Path, String>): String {
+        val entries = pairs.map { (file, relativeTarget) -> Entry(file, relativeTarget, hashOf(file)) }
+        val uniqueEntries = entries.distinctBy { it.hash }
+
+        val storedSizes = queryStoredSizes(uniqueEntries.map { it.hash })
+        val uploadedEntries = uniqueEntries.filter { entry ->
+            val storedSize = storedSizes[entry.hash] ?: 0
+            if (storedSize == completeMarker) {
+                logger.info("Skipping upload of ${entry.file.fileName}, it is already on the node")
+                false
+            } else {
+                if (storedSize > 0) {
+                    logger.info("Resuming upload of ${entry.file.fileName} from byte $storedSize")
+                }
+                session.uploadFileRemainder(entry.file, "$deploymentPath/${partPathOf(entry.hash)}", storedSize)
+                true
+            }
+        }
+
+        finishDeployment(uploadedEntries, entries)
+        return fingerprintOf(*entries.map { "${it.hash} ${it.relativeTarget}" }.toTypedArray())
+    }
+
+    private fun queryStoredSizes(hashes: List<String>): Map<String, Long> {
+        val command = buildString {
+            append("cd ${quoted(deploymentPath)} && mkdir -p $storeDirectory && ")
+            append("for h in ${hashes.joinToString(" ")}; do ")
+            append("if [ -f $storeDirectory/\$h ]; then echo \"\$h $completeMarker\"; ")
+            append("elif [ -f $storeDirectory/\$h.part ]; then echo \"\$h \$(wc -c < $storeDirectory/\$h.part)\"; ")
+            append("else echo \"\$h 0\"; fi; ")
+            append("done")
+        }
+        return session.executeSingleCommandForStdout(command)
+            .lineSequence()
+            .map { it.trim().split(Regex("\\s+")) }
+            .filter { it.size == 2 && it[0] in hashes }
+            .associate { (hash, size) -> hash to (size.toLongOrNull() ?: 0) }
+    }
+
+    private fun finishDeployment(uploadedEntries: List<Entry>, entries: List<Entry>) {
+        val command = buildString {
+            append("cd ${quoted(deploymentPath)} && ")
+
+            // Only verified files get into the store, broken parts are discarded so the next run starts over
+            uploadedEntries.forEach {
+                val part = partPathOf(it.hash)
+                append("if [ \"\$({ sha256sum $part 2>/dev/null || shasum -a 256 $part; } | cut -d' ' -f1)\" = ${it.hash} ]; ")
+                append("then mv -f $part $storeDirectory/${it.hash}; ")
+                append("else rm -f $part; echo \"$failureMarker ${it.hash}\"; fi; ")
+            }
+
+            // Targets are replaced with a new file instead of being overwritten in place,
+            // as a warm node might still be executing the previous version of them
+            entries.forEach {
+                val target = quoted(it.relativeTarget)
+                val copy = quoted("${it.relativeTarget}.${it.hash}")
+                val stored = "$storeDirectory/${it.hash}"
+                append("if [ -f $stored ]; then ")
+                append("mkdir -p \"\$(dirname $target)\" && ")
+                append("{ ln -f $stored $target 2>/dev/null || { cp -f $stored $copy && mv -f $copy $target; }; }; fi; ")
+            }
+
+            append("printf '%s\\n' ")
+            append(entries.joinToString(" ") { quoted("${it.hash} ${it.relativeTarget}") })
+            append(" > $storeDirectory/$manifestFile")
+        }
+
+        val failedHashes = session.executeSingleCommandForStdout(command)
+            .lineSequence()
+            .map { it.trim() }
+            .filter { it.startsWith("$failureMarker ") }
+            .map { it.removePrefix("$failureMarker ") }
+            .toSet()
+        if (failedHashes.isNotEmpty()) {
+            val failedFiles = uploadedEntries
+                .filter { it.hash in failedHashes }
+                .joinToString { it.file.fileName.toString() }
+            throw RuntimeException("Uploaded files are corrupted on the node: $failedFiles")
+        }
+    }
+
+    private data class Entry(
+        val file: Path,
+        val relativeTarget: String,
+        val hash: String
+    )
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(DeploymentStore::class.java)
+
+        private const val storeDirectory = "store"
+        private const val manifestFile = "manifest"
+        private const val completeMarker = -1L
+        private const val failureMarker = "CORRUPTED"
+
+        private fun partPathOf(hash: String) = "$storeDirectory/$hash.part"
+
+        private fun quoted(value: String) = "'" + value.replace("'", "'\\''") + "'"
+
+        fun fingerprintOf(vararg parts: String): String {
+            val digest = MessageDigest.getInstance("SHA-256")
+            parts.forEach {
+                digest.update(it.encodeToByteArray())
+                digest.update(0)
+            }
+            return digest.toHexString()
+        }
+
+        private fun hashOf(file: Path): String {
+            val digest = MessageDigest.getInstance("SHA-256")
+            Files.newInputStream(file).use { input ->
+                val buffer = ByteArray(64 * 1024)
+                while (true) {
+                    val read = input.read(buffer)
+                    if (read < 0) break
+                    digest.update(buffer, 0, read)
+                }
+            }
+            return digest.toHexString()
+        }
+
+        private fun MessageDigest.toHexString(): String = digest().joinToString("") { "%02x".format(it) }
+    }
+}
@@ -0,0 +1,58 @@
+package io.engenious.sift.node.central.plugin
+
+/**
+ * Decides what to do after each heartbeat of a remote node. Not thread safe, it is only used from the heartbeat thread.
+ *
+ * @param maxMissedHeartbeats number of heartbeats in a row a node should miss to be considered dead
+ * @param maxReconnectAttempts number of attempts in a row to reconnect to a node that stopped responding
+ *  before considering it dead, 0 when the node can't be reconnected
+ */
+internal class HeartbeatMonitor(
+    private val maxMissedHeartbeats: Int,
+    private val maxReconnectAttempts: Int
+) {
+    var missedHeartbeats = 0
+        private set
+    var reconnectAttempts = 0
+        private set
+
+    /**
+     * True after a successful reconnect until the node responds to a heartbeat
+     */
+    private var isCheckingReconnect = false
+
+    fun onResponded() {
+        missedHeartbeats = 0
+        reconnectAttempts = 0
+        isCheckingReconnect = false
+    }
+
+    fun onMissed(): Action {
+        missedHeartbeats += 1
+        if (isCheckingReconnect) {
+            // The connection was re-established, but the node itself still doesn't respond (e.g. its JVM hung)
+            return Action.GIVE_UP
+        }
+        if (missedHeartbeats < maxMissedHeartbeats) {
+            return Action.WAIT
+        }
+        if (reconnectAttempts < maxReconnectAttempts) {
+            reconnectAttempts += 1
+            return Action.RECONNECT
+        }
+        return Action.GIVE_UP
+    }
+
+    /**
+     * Called when [Action.RECONNECT] succeeded. The next heartbeat tells whether the node is back.
+     */
+    fun onReconnected() {
+        isCheckingReconnect = true
+    }
+
+    enum class Action {
+        WAIT,
+        RECONNECT,
+        GIVE_UP
+    }
+}
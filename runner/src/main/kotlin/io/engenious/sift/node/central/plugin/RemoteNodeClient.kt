@@ -1,31 +1,69 @@
 package io.engenious.sift.node.central.plugin
 
-import com.github.tarcv.tongs.api.testcases.TestCase
+import io.engenious.sift.node.remote.BinaryRpc
 import io.engenious.sift.node.remote.Node
-import io.engenious.sift.node.serialization.RemoteDevice
+import io.engenious.sift.node.remote.NodeCommand
+import io.engenious.sift.node.serialization.ArtifactDownloader
 import io.engenious.sift.node.serialization.RemoteTestCaseRunResult
 import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.json.JsonArray
+import kotlinx.serialization.json.JsonElement
 import kotlinx.serialization.json.JsonObject
 import kotlinx.serialization.json.JsonPrimitive
 import kotlinx.serialization.serializer
 import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import org.http4k.client.OkHttp
+import org.http4k.core.BodyMode
 import org.http4k.core.Filter
+import org.http4k.core.HttpHandler
 import org.http4k.core.Method
 import org.http4k.core.Request
 import org.http4k.core.then
 import org.http4k.core.with
 import org.http4k.format.ConfigurableKotlinxSerialization
 import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.io.File
 import java.io.IOException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
 
-open class RemoteNodeClient(port: Int) {
+/**
+ * @param reconnect re-establishes the connection to the node, called when the node stops responding
+ */
+open class RemoteNodeClient(
+    port: Int,
+    private val reconnect: (() -> Unit)? = null
+) : ArtifactDownloader, Closeable {
     private val baseUrl = "http://127.0.0.1:$port/rpc"
-    private var id = 1
+    private val binaryBaseUrl = "http://127.0.0.1:$port/binary"
+    private val artifactsUrl = "http://127.0.0.1:$port/artifacts"
+    private val resultEventsUrl = "http://127.0.0.1:$port${NodeCommand.resultEventsPath}"
+    private val id = AtomicInteger(1)
+
+    /**
+     * False after the node missed several heartbeats in a row
+     */
+    @Volatile
+    var isAlive = true
+        private set
+
+    /**
+     * Frequent calls use [BinaryRpc] once the node announces support for it
+     */
+    @Volatile
+    private var useBinaryRpc = false
+    private val heartbeatMonitor = HeartbeatMonitor( // only accessed from the heartbeat thread
+        maxMissedHeartbeats,
+        if (reconnect != null) maxReconnectAttempts else 0
+    )
+    private val heartbeatExecutor = Executors.newSingleThreadScheduledExecutor {
+        Thread(it, "NodeHeartbeat-$port").apply { isDaemon = true }
+    }
     protected object RequestSerializer : ConfigurableKotlinxSerialization({
         encodeDefaults = true
         ignoreUnknownKeys = true
@@ -34,6 +72,39 @@ open class RemoteNodeClient(port: Int) {
 
     companion object {
         private val logger = LoggerFactory.getLogger(RemoteNodeClient::class.java)
+
+        /**
+         * Maximum time a node holds a takeRunResult request while waiting for a result
+         */
+        private const val resultPollMillis = 30_000L
+
+        /**
+         * Maximum time between checks whether queued test cases should be taken back from a node
+         */
+        private const val reclaimCheckMillis = 5_000L
+
+        /**
+         * A node waits up to 30 seconds for its Tongs run to finish when shutting down
+         */
+        private const val nodeStopTimeoutMillis = 45_000L
+
+        /**
+         * Extra time given to a node to report a result after the test execution timeout
+         */
+        private const val resultTimeoutGraceMillis = 10_000L
+
+        private const val heartbeatIntervalMillis = 2_000L
+        private const val heartbeatTimeoutMillis = 3_000L
+
+        /**
+         * Number of heartbeats in a row a node should miss to be considered dead
+         */
+        private const val maxMissedHeartbeats = 3
+
+        /**
+         * Number of attempts in a row to reconnect to a node that stopped responding before considering it dead
+         */
+        private const val maxReconnectAttempts = 3
     }
 
     private val responseValidator = Filter { next ->
@@ -55,8 +126,11 @@ open class RemoteNodeClient(port: Int) {
             }
         }
     }
-    private val client = OkHttpClient.Builder()
+    private val baseClient = OkHttpClient.Builder()
         .followRedirects(true)
+        .readTimeout(resultPollMillis + 10_000L, TimeUnit.MILLISECONDS)
+        .build()
+    private val client = baseClient.newBuilder()
         .let {
             it.addInterceptor(
                 HttpLoggingInterceptor()
@@ -71,32 +145,319 @@ open class RemoteNodeClient(port: Int) {
             responseValidator.then(it)
         }
 
-    fun init(): Node.NodeInfo = doRequest("init", NoArguments())
+    // Not derived from baseClient, so that its calls are not cancelled together with the ones of the other clients
+    private val heartbeatClient = OkHttpClient.Builder()
+        .callTimeout(heartbeatTimeoutMillis, TimeUnit.MILLISECONDS)
+        .build()
+        .let { OkHttp(it) }
+        .let {
+            responseValidator.then(it)
+        }
+
+    // Body logging would buffer whole artifacts in memory, so only headers are logged here
+    private val artifactClient = baseClient.newBuilder()
+        .let {
+            it.addInterceptor(
+                HttpLoggingInterceptor()
+                    .apply {
+                        setLevel(HttpLoggingInterceptor.Level.HEADERS)
+                    }
+            )
+        }
+        .build()
+        .let { OkHttp(it, BodyMode.Stream) }
+        .let {
+            responseValidator.then(it)
+        }
 
-    fun runTest(device: RemoteDevice, testCase: TestCase, timeoutMillis: Long): RemoteTestCaseRunResult {
-        val taskResult: Node.TestRunRequestResult = doRequest("runTest", Node.RunTest(device, testCase))
-        val delay = 10_000L
-        val timeout = timeoutMillis + delay
-        logger.info("Will wait for test result for $timeout ms")
+    private val resultEvents = ResultEventStream(resultEventsUrl, baseClient)
 
-        val timeoutTime = System.currentTimeMillis() + timeout
-        do {
-            val result: Node.TakeRunResultResult =
-                doRequest("takeRunResult", Node.TakeRunResult(taskResult.taskId))
-            if (result.result != null) {
-                return result.result
+    fun init(): Node.NodeInfo {
+        val nodeInfo: Node.NodeInfo = doRequest("init", NoArguments())
+        useBinaryRpc = BinaryRpc.codecName in nodeInfo.codecs
+        return nodeInfo
+    }
+
+    /**
+     * Checks whether a node kept warm by a previous run is listening, and stops it when it was started
+     * with a different [fingerprint]
+     * @return true when the running node can be reused
+     */
+    fun attachToWarmNode(fingerprint: String): Boolean {
+        val status = try {
+            doRequest<NoArguments, Node.NodeStatus>("status", NoArguments(), attempts = 0)
+        } catch (e: IOException) {
+            return false
+        } catch (e: RetryableException) {
+            return false
+        } catch (e: Exception) {
+            // E.g. a node of an older version that doesn't know the method
+            logger.info("The running node failed to report its status, stopping it", e)
+            shutdown()
+            awaitNodeStopped()
+            return false
+        }
+        if (status.fingerprint == fingerprint) {
+            return true
+        }
+
+        logger.info("The running node was started with other binaries or configuration, stopping it")
+        shutdown()
+        awaitNodeStopped()
+        return false
+    }
+
+    /**
+     * Ends the run on the node without stopping it
+     */
+    fun detach() {
+        val result: Node.DetachResult = doRequest("detach", NoArguments(), attempts = 0)
+        if (result.cancelledTests > 0) {
+            logger.info("Cancelled ${result.cancelledTests} queued tests while detaching from the node")
+        }
+    }
+
+    fun shutdown() {
+        try {
+            doRequest<NoArguments, JsonElement>("shutdown", NoArguments(), attempts = 0)
+        } catch (e: IOException) {
+            // The node might stop before sending a response
+        }
+    }
+
+    private fun awaitNodeStopped() {
+        val deadline = System.currentTimeMillis() + nodeStopTimeoutMillis
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                doRequest<NoArguments, Node.NodeStatus>("status", NoArguments(), attempts = 0)
+            } catch (e: IOException) {
+                return
+            } catch (e: RetryableException) {
+                return
+            } catch (e: Exception) {
+                // The node still responds, although it can't report its status
             }
+            Thread.sleep(1_000)
+        }
+        throw RuntimeException("The running node didn't stop in time")
+    }
+
+    /**
+     * Queues all [testCaseHandles] on the node before waiting for results, so the node can start the next test case
+     * right after the previous one without waiting for the central node.
+     * [timeoutMillis] applies to each test case separately.
+     *
+     * Each result is passed to [onResult] as soon as the node announces it in its result event stream.
+     * While waiting, test cases that are not started yet are taken back from the node
+     * when [isReclaimRequested] returns true for their index.
+     * @return results in the same order as [testCaseHandles], null for test cases that were taken back
+     *  or not finished because the node stopped responding
+     */
+    fun runTests(
+        deviceHandle: Int,
+        testCaseHandles: List<Int>,
+        timeoutMillis: Long,
+        isReclaimRequested: (index: Int) -> Boolean = { false },
+        onResult: (index: Int, result: RemoteTestCaseRunResult) -> Unit = { _, _ -> }
+    ): List<RemoteTestCaseRunResult?> {
+        val results = arrayOfNulls<RemoteTestCaseRunResult>(testCaseHandles.size)
+        try {
+            val taskIds = testCaseHandles.map { testCaseHandle ->
+                call<Node.RunTest, Node.TestRunRequestResult>("runTest", Node.RunTest(deviceHandle, testCaseHandle))
+                    .taskId
+            }
+            val reclaimer = Reclaimer(taskIds, isReclaimRequested, ::cancelTest)
+
+            val timeout = timeoutMillis + resultTimeoutGraceMillis
+            logger.info("Will wait for each test result for $timeout ms")
+            // The node executes queued test cases one after another, so the timeout restarts after each result
+            var timeoutTime = System.currentTimeMillis() + timeout
+            while (true) {
+                val pending = taskIds.indices.filter { results[it] == null && !reclaimer.isReclaimed(it) }
+                val first = pending.firstOrNull() ?: break
+                if (!isAlive) {
+                    throw NodeUnavailableException()
+                }
+                if (System.currentTimeMillis() > timeoutTime) {
+                    throw TimeoutException("Timed out getting test execution result")
+                }
+
+                val pollMillis = if (reclaimer.reclaimAfter(first)) reclaimCheckMillis else resultPollMillis
+                val waitMillis = (timeoutTime - System.currentTimeMillis()).coerceIn(0, pollMillis)
+                val candidates = if (resultEvents.isConnected) {
+                    val finishedIds = resultEvents.awaitFinished(pending.map(taskIds::get), waitMillis)
+
+                    // Events are lost while the stream reconnects, so the oldest task is checked when none came
+                    pending
+                        .filter { taskIds[it] in finishedIds }
+                        .ifEmpty { listOf(first) }
+                        .map { it to 0L }
+                } else {
+                    // The node holds the request until the result is ready or the wait time is over
+                    listOf(first to waitMillis)
+                }
+
+                val receivedTaskIds = mutableListOf<String>()
+                candidates.forEach { (index, resultWaitMillis) ->
+                    val result = takeRunResult(taskIds[index], resultWaitMillis)
+                        ?: return@forEach
+                    resultEvents.forget(taskIds[index])
+                    results[index] = result
+                    timeoutTime = System.currentTimeMillis() + timeout
+                    onResult(index, result)
+                    receivedTaskIds.add(taskIds[index])
+                }
+                acknowledgeResults(receivedTaskIds)
+            }
+        } catch (e: NodeUnavailableException) {
+            logger.warn("The node stopped responding, its unfinished tests will be executed on other devices")
+        }
+        return results.toList()
+    }
 
-            Thread.sleep(delay)
-        } while (System.currentTimeMillis() <= timeoutTime)
-        throw TimeoutException("Timed out getting test execution result")
+    /**
+     * Starts following the stream in which the node announces finished test cases
+     */
+    fun followResultEvents() {
+        resultEvents.start()
+    }
+
+    /**
+     * Starts checking in the background that the node is still responding
+     */
+    fun startHeartbeat() {
+        heartbeatExecutor.scheduleWithFixedDelay(
+            ::checkHeartbeat,
+            heartbeatIntervalMillis,
+            heartbeatIntervalMillis,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    private fun checkHeartbeat() {
+        if (!isAlive) {
+            return
+        }
+
+        val responded = try {
+            call<NoArguments, Node.NodeStatus>("status", NoArguments(), attempts = 0, httpClient = heartbeatClient)
+            true
+        } catch (e: Exception) {
+            false
+        }
+        if (responded) {
+            heartbeatMonitor.onResponded()
+            return
+        }
+
+        when (heartbeatMonitor.onMissed()) {
+            HeartbeatMonitor.Action.WAIT -> return
+            HeartbeatMonitor.Action.RECONNECT -> {
+                // Results are kept in the outbox of the node, so pending requests get them after reconnecting
+                logger.warn(
+                    "The node missed ${heartbeatMonitor.missedHeartbeats} heartbeats, " +
+                        "reconnecting (attempt ${heartbeatMonitor.reconnectAttempts})"
+                )
+                try {
+                    reconnect!!.invoke()
+                    heartbeatMonitor.onReconnected()
+                } catch (e: Exception) {
+                    logger.warn("Failed to reconnect to the node", e)
+                }
+                return
+            }
+            HeartbeatMonitor.Action.GIVE_UP -> Unit
+        }
+
+        logger.error("The node missed ${heartbeatMonitor.missedHeartbeats} heartbeats, considering it dead")
+        isAlive = false
+
+        // Abort pending requests, including long polls for results
+        baseClient.dispatcher.cancelAll()
+    }
+
+    override fun close() {
+        heartbeatExecutor.shutdownNow()
+        resultEvents.close()
+    }
+
+    private fun cancelTest(taskId: String): Boolean {
+        val result: Node.CancelTestResult = call("cancelTest", Node.CancelTest(taskId))
+        return result.cancelled
+    }
+
+    /**
+     * Lets the node remove received results from its outbox. The node keeps results that were not acknowledged
+     * until the end of the run, so a failure here is not critical.
+     */
+    private fun acknowledgeResults(taskIds: List<String>) {
+        if (taskIds.isEmpty()) {
+            return
+        }
+        try {
+            call<Node.AckResults, Node.AckResultsResult>("ackResults", Node.AckResults(taskIds))
+        } catch (e: Exception) {
+            logger.warn("Failed to acknowledge results $taskIds", e)
+        }
+    }
+
+    private fun takeRunResult(taskId: String, waitMillis: Long): RemoteTestCaseRunResult? {
+        val result: Node.TakeRunResultResult = call("takeRunResult", Node.TakeRunResult(taskId, waitMillis))
+        return result.result
+    }
+
+    override fun download(artifactId: String, target: File) {
+        repeatUntilSuccessful {
+            Request(Method.GET, "$artifactsUrl/$artifactId")
+                .run(artifactClient)
+                .body
+                .stream
+                .use { input ->
+                    target.outputStream().use { output ->
+                        input.copyTo(output)
+                    }
+                }
+        }
+    }
+
+    private inline fun <reified Rq : Any, reified Rs : Any> call(
+        method: String,
+        request: Rq,
+        attempts: Int = 5,
+        httpClient: HttpHandler = client
+    ): Rs {
+        return if (useBinaryRpc) {
+            doBinaryRequest(method, request, attempts, httpClient)
+        } else {
+            doRequest(method, request, attempts, httpClient)
+        }
+    }
+
+    private inline fun <reified Rq : Any, reified Rs : Any> doBinaryRequest(
+        method: String,
+        request: Rq,
+        attempts: Int,
+        httpClient: HttpHandler
+    ): Rs {
+        val requestSerializer = serializer<Rq>()
+        val responseSerializer = serializer<Rs>()
+        return repeatUntilSuccessful(attempts) {
+            Request(Method.POST, "$binaryBaseUrl/$method")
+                .header("Content-Type", BinaryRpc.contentType)
+                .body(BinaryRpc.encode(requestSerializer, request))
+                .run(httpClient)
+                .let { response ->
+                    BinaryRpc.decodeReply(responseSerializer, response.body.stream.use { it.readBytes() })
+                }
+        }
     }
 
     @OptIn(ExperimentalSerializationApi::class)
     private inline fun <reified Rq : Any, reified Rs : Any> doRequest(
         method: String,
         request: Rq,
-        attempts: Int = 5
+        attempts: Int = 5,
+        httpClient: HttpHandler = client
     ): Rs {
         val serializedParams = RequestSerializer.asJsonObject(request)
             .let {
@@ -118,7 +479,7 @@ open class RemoteNodeClient(port: Int) {
             mapOf(
                 "jsonrpc" to JsonPrimitive("2.0"),
                 "method" to JsonPrimitive(method),
-                "id" to JsonPrimitive(id++)
+                "id" to JsonPrimitive(id.getAndIncrement())
             ) + serializedParams
         )
 
@@ -130,7 +491,7 @@ open class RemoteNodeClient(port: Int) {
         return repeatUntilSuccessful(attempts) {
             Request(Method.POST, baseUrl)
                 .with(requestLens of rpcRequest)
-                .run(client)
+                .run(httpClient)
                 .let { responseLens(it) }
                 .run {
                     RequestSerializer.json.decodeFromJsonElement(
@@ -159,7 +520,9 @@ open class RemoteNodeClient(port: Int) {
                 exception
             }
 
-            if (attempts > 0) {
+            if (!isAlive) {
+                throw NodeUnavailableException(exception)
+            } else if (attemptsLeft > 0) {
                 Thread.sleep(sleepDelay)
                 attemptsLeft -= 1
                 sleepDelay *= 2
@@ -171,5 +534,38 @@ open class RemoteNodeClient(port: Int) {
 
     class RetryableException(message: String) : RuntimeException(message)
 
+    class NodeUnavailableException(cause: Throwable? = null) : RuntimeException("The node stopped responding", cause)
+
+    private class Reclaimer(
+        private val taskIds: List<String>,
+        private val isReclaimRequested: (index: Int) -> Boolean,
+        private val cancelTest: (taskId: String) -> Boolean
+    ) {
+        private val reclaimed = HashSet<Int>()
+        private val started = HashSet<Int>()
+
+        fun isReclaimed(index: Int): Boolean = index in reclaimed
+
+        /**
+         * Takes back requested test cases queued after [index], starting from the last one
+         * @return true when some of them can still be taken back later
+         */
+        fun reclaimAfter(index: Int): Boolean {
+            val candidates = (taskIds.lastIndex downTo index + 1)
+                .filter { it !in reclaimed && it !in started }
+            candidates.forEach {
+                if (isReclaimRequested(it)) {
+                    if (cancelTest(taskIds[it])) {
+                        logger.info("Took back test task ${taskIds[it]} from the node for an idle device")
+                        reclaimed.add(it)
+                    } else {
+                        started.add(it)
+                    }
+                }
+            }
+            return candidates.any { it !in reclaimed && it !in started }
+        }
+    }
+
     @Serializable class NoArguments
 }
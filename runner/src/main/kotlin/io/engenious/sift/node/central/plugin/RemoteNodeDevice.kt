@@ -4,14 +4,18 @@ import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.devices.Diagnostics
 import com.github.tarcv.tongs.api.devices.DisplayGeometry
 import com.github.tarcv.tongs.api.devices.Pool
-import com.github.tarcv.tongs.api.result.RunTesult
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.api.testcases.TestCase
 import io.engenious.sift.node.serialization.RemoteDevice
 import io.engenious.sift.node.serialization.RemoteTestCaseRunResult.Companion.toTestCaseRunResult
 
+/**
+ * @property deviceHandle index of the device in the list reported by the node
+ */
 class RemoteNodeDevice(
     private val node: RemoteSshNode,
-    private val device: RemoteDevice
+    private val device: RemoteDevice,
+    private val deviceHandle: Int
 ) : Device() {
     private val staticUnusedValue = Any()
 
@@ -20,9 +24,28 @@ class RemoteNodeDevice(
         device.uniqueIdentifier
     )
 
-    fun runTest(pool: Pool, testCase: TestCase, timeoutMillis: Long): RunTesult {
-        return node.client.runTest(device, testCase, timeoutMillis)
-            .toTestCaseRunResult(pool)
+    /**
+     * @param onResult receives each result as soon as it is downloaded from the node
+     */
+    fun runTests(
+        pool: Pool,
+        testCases: List<TestCase>,
+        timeoutMillis: Long,
+        isReclaimRequested: (index: Int) -> Boolean,
+        onResult: (index: Int, result: TestCaseRunResult) -> Unit
+    ): List<TestCaseRunResult?> {
+        val results = arrayOfNulls<TestCaseRunResult>(testCases.size)
+        node.client.runTests(
+            deviceHandle,
+            testCases.map(node::testCaseHandleOf),
+            timeoutMillis,
+            isReclaimRequested
+        ) { index, remoteResult ->
+            val result = remoteResult.toTestCaseRunResult(pool, device, testCases[index], node.client)
+            results[index] = result
+            onResult(index, result)
+        }
+        return results.toList()
     }
 
     override fun getHost(): String = node.name
@@ -47,6 +70,8 @@ class RemoteNodeDevice(
 
     override fun getUniqueIdentifier(): Identifier = identifier
 
+    override fun isAvailable(): Boolean = node.isAlive
+
     data class Identifier(
         val nodeIdentifier: Any,
         val deviceIdentifier: Any
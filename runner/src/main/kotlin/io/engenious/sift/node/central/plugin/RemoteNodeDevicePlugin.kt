@@ -1,5 +1,6 @@
 package io.engenious.sift.node.central.plugin
 
+import com.github.tarcv.tongs.Utils
 import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.devices.DeviceProvider
 import com.github.tarcv.tongs.api.devices.DeviceProviderContext
@@ -13,6 +14,7 @@ import com.github.tarcv.tongs.api.testcases.TestCaseProviderContext
 import com.github.tarcv.tongs.api.testcases.TestCaseProviderFactory
 import io.engenious.sift.Config
 import io.engenious.sift.LocalConfigurationClient
+import io.engenious.sift.node.remote.Node
 import io.engenious.sift.node.serialization.RemoteDevice
 import io.engenious.sift.node.serialization.RemoteTestCase.Companion.toTestCase
 import kotlinx.coroutines.CompletableDeferred
@@ -25,6 +27,10 @@ import java.net.URL
 import java.nio.file.Path
 import java.nio.file.Paths
 import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
 
 class RemoteNodeDevicePlugin(
     private val globalConfiguration: Config.WithInjectedCentralNodeVars
@@ -33,6 +39,7 @@ class RemoteNodeDevicePlugin(
     private val relativeTestPath = "test." + globalConfiguration.testPackage.substringAfterLast('.')
 
     private val sessions = Collections.synchronizedList(mutableListOf<SshSession>())
+    private val clients = Collections.synchronizedList(mutableListOf<RemoteNodeClient>())
     private val devicesAndTests = CompletableDeferred<DeviceAndTests>()
 
     class DeviceAndTests(
@@ -48,6 +55,8 @@ class RemoteNodeDevicePlugin(
     companion object {
         const val siftLocalBasePort = 9760
         const val siftRemotePort = 9759
+        private const val maxParallelNodeConnections = 8
+        private const val warmNodeLogPath = "node.log"
         val logger: Logger = LoggerFactory.getLogger(RemoteNodeDevicePlugin::class.java)
     }
 
@@ -75,92 +84,144 @@ class RemoteNodeDevicePlugin(
     }
 
     fun connect(): List<RemoteNodeDevice> {
-        val allDevices = Collections.synchronizedList(mutableListOf<RemoteNodeDevice>())
-        val allTests = Collections.synchronizedList(mutableListOf<TestCase>())
+        val nodes = globalConfiguration.nodes
+        if (nodes.isEmpty()) {
+            devicesAndTests.complete(DeviceAndTests(emptyList(), emptyList()))
+            return emptyList()
+        }
+
+        // Nodes are independent, so their bring-up (upload, start, test discovery) is done concurrently
+        val executor = Utils.namedExecutor(nodes.size.coerceAtMost(maxParallelNodeConnections), "NodeConnect-%d")
+        val connectedNodes = try {
+            val futures = nodes.mapIndexed { index, it ->
+                executor.submit(Callable { connectNode(index, it) })
+            }
+            futures.map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    futures.forEach { future -> future.cancel(true) }
+                    throw e.cause ?: e
+                }
+            }
+        } catch (t: Throwable) {
+            executor.shutdownNow()
+            executor.awaitTermination(1, TimeUnit.MINUTES)
+            disconnectAll()
+            throw t
+        } finally {
+            executor.shutdown()
+        }
+
+        val allDevices = connectedNodes.flatMap { it.devices }
+        devicesAndTests.complete(
+            DeviceAndTests(
+                allDevices,
+                connectedNodes.flatMap { it.tests }
+            )
+        )
+        return allDevices
+    }
+
+    private fun connectNode(index: Int, it: Config.NodeConfig.WithInjectedCentralNodeVars): DeviceAndTests {
+        val certificatePath = it.pathToCertificate
+        requireNotNull(certificatePath) { "Node ${it.name} has no private key set" }
+        require(File(certificatePath).isFile) { "Private key for node ${it.name} is not a file" }
 
-        globalConfiguration.nodes
-            .forEachIndexed { index, it ->
-                val certificatePath = it.pathToCertificate
-                requireNotNull(certificatePath) { "Node ${it.name} has no private key set" }
-                require(File(certificatePath).isFile) { "Private key for node ${it.name} is not a file" }
+        val session = it.createSession(certificatePath)
 
-                val session = SshSession.create(
-                    it.name,
-                    it.host, it.port,
-                    it.username, certificatePath
-                )
+        try {
+            val selfJar = getSelfJarPath()
+            val deploymentPath = it.resolveDeploymentPath { key ->
+                session.executeSingleCommandForStdout("echo $key").trim()
+            }
+            val (relativeBinPath, binariesFingerprint) = session.uploadBinaries(
+                deploymentPath,
+                selfJar, Paths.get(globalConfiguration.appPackage), Paths.get(globalConfiguration.testPackage)
+            )
+            val encodedConfig = encodeConfig(resolveConfigForNode(it))
+            val relativeConfigPath = session.uploadConfig(deploymentPath, encodedConfig)
+            val localPort = session.setupPortForwarding(it, index)
+            val tunnelSession = AtomicReference(session)
+            val client = RemoteNodeClient(localPort) {
+                reconnectTunnel(it, certificatePath, index, session, tunnelSession)
+            }
+            val fingerprint = DeploymentStore.fingerprintOf(binariesFingerprint, encodedConfig)
 
+            if (globalConfiguration.keepNodesWarm && client.attachToWarmNode(fingerprint)) {
+                logger.info("Reusing the warm node ${it.name}")
+            } else {
+                val nodeCommand = "${Node.fingerprintEnvironmentVariable}=$fingerprint " +
+                    "./$relativeBinPath config _node -c ./$relativeConfigPath"
                 try {
-                    val selfJar = getSelfJarPath()
-                    val deploymentPath = it.resolveDeploymentPath { key ->
-                        session.executeSingleCommandForStdout("echo $key").trim()
-                    }
-                    val relativeBinPath = session.uploadBinaries(
-                        deploymentPath,
-                        selfJar, Paths.get(globalConfiguration.appPackage), Paths.get(globalConfiguration.testPackage)
+                    session.executeSingleBackgroundCommand(
+                        "cd $deploymentPath && " +
+                            "chmod +x ./$relativeBinPath && " +
+                            if (globalConfiguration.keepNodesWarm) {
+                                // The node should outlive the SSH session
+                                "nohup $nodeCommand > $warmNodeLogPath 2>&1 &"
+                            } else {
+                                nodeCommand
+                            }
                     )
-                    val relativeConfigPath = session.uploadConfig(deploymentPath, resolveConfigForNode(it))
-                    val localPort = session.setupPortForwarding(it, index)
-
-                    try {
-                        session.executeSingleBackgroundCommand(
-                            "cd $deploymentPath && " +
-                                "chmod +x ./$relativeBinPath && " +
-                                "./$relativeBinPath config _node -c ./$relativeConfigPath"
-                        )
-                    } catch (e: IOException) {
-                        throw RuntimeException("Failed to start the node ${it.name}")
-                    }
+                } catch (e: IOException) {
+                    throw RuntimeException("Failed to start the node ${it.name}")
+                }
+            }
 
-                    val client = RemoteNodeClient(localPort)
-                    val nodeInfo = client.init()
+            val nodeInfo = client.init()
+            client.startHeartbeat()
+            client.followResultEvents()
+            logger.info("Node ${it.name} is ready")
 
-                    val node = RemoteSshNode(
-                        it,
-                        client
-                    )
-                    val dict = mutableMapOf<RemoteDevice, RemoteNodeDevice>()
-
-                    nodeInfo.testCases
-                        .map { test ->
-                            test.toTestCase(
-                                deviceMapper = { device ->
-                                    dict.getOrPut(device) {
-                                        RemoteNodeDevice(node, device)
-                                    }
-                                }
-                            )
-                        }
-                        .let {
-                            allTests.addAll(it)
-                        }
+            val node = RemoteSshNode(
+                it,
+                client
+            )
+            val dict = mutableMapOf<RemoteDevice, RemoteNodeDevice>()
+
+            val devices = nodeInfo.devices
+                .mapIndexed { index, device ->
+                    dict.getOrPut(device) {
+                        RemoteNodeDevice(node, device, index)
+                    }
+                }
 
-                    nodeInfo.devices
-                        .map { device ->
+            val tests = nodeInfo.testCases
+                .map { test ->
+                    test.toTestCase(
+                        deviceMapper = { device ->
                             dict.getOrPut(device) {
-                                RemoteNodeDevice(node, device)
+                                RemoteNodeDevice(node, device, nodeInfo.devices.indexOf(device))
                             }
                         }
-                        .let {
-                            allDevices.addAll(it)
-                        }
-                    sessions.add(session)
-                } catch (t: Throwable) {
-                    session.close()
-                    throw t
+                    )
                 }
-            }
-
-        devicesAndTests.complete(
-            DeviceAndTests(
-                allDevices,
-                allTests
-            )
-        )
-        return allDevices
+            node.setTestCases(tests)
+            sessions.add(session)
+            clients.add(client)
+            return DeviceAndTests(devices, tests)
+        } catch (t: Throwable) {
+            session.close()
+            throw t
+        }
     }
 
     private fun disconnectAll() {
+        synchronized(clients) {
+            clients.forEach {
+                try {
+                    it.close()
+                    if (globalConfiguration.keepNodesWarm) {
+                        it.detach()
+                    } else {
+                        it.shutdown()
+                    }
+                } catch (t: Throwable) {
+                    logger.warn("Error while finishing the run on a node", t)
+                }
+            }
+        }
         synchronized(sessions) {
             sessions.forEach {
                 try {
@@ -172,6 +233,52 @@ class RemoteNodeDevicePlugin(
         }
     }
 
+    private fun Config.NodeConfig.WithInjectedCentralNodeVars.createSession(certificatePath: String): SshSession {
+        return SshSession.create(
+            name,
+            host, port,
+            username, certificatePath
+        )
+    }
+
+    /**
+     * Moves the port forwarding of a node to a new SSH session after the previous one stopped working.
+     * [launchSession] is kept, as closing it might stop the node. Other replaced sessions are closed.
+     */
+    private fun reconnectTunnel(
+        it: Config.NodeConfig.WithInjectedCentralNodeVars,
+        certificatePath: String,
+        nodeIndex: Int,
+        launchSession: SshSession,
+        tunnelSession: AtomicReference<SshSession>
+    ) {
+        val localPort = siftLocalBasePort + nodeIndex
+        try {
+            tunnelSession.get().stopLocalPortForwarding(localPort)
+        } catch (e: Exception) {
+            logger.debug("Failed to stop the previous port forwarding for the node ${it.name}", e)
+        }
+
+        val newSession = it.createSession(certificatePath)
+        try {
+            newSession.setupPortForwarding(it, nodeIndex)
+        } catch (t: Throwable) {
+            newSession.close()
+            throw t
+        }
+        sessions.add(newSession)
+        val previousSession = tunnelSession.getAndSet(newSession)
+        if (previousSession !== launchSession) {
+            sessions.remove(previousSession)
+            try {
+                previousSession.close()
+            } catch (e: Exception) {
+                logger.debug("Failed to close the previous SSH session for the node ${it.name}", e)
+            }
+        }
+        logger.info("Reconnected to the node ${it.name}")
+    }
+
     private fun SshSession.setupPortForwarding(
         it: Config.NodeConfig.WithInjectedCentralNodeVars,
         nodeIndex: Int
@@ -187,15 +294,18 @@ class RemoteNodeDevicePlugin(
 
     private fun SshSession.uploadConfig(
         deploymentPath: String,
-        nodeConfiguration: Config.WithInjectedCentralNodeVars
+        encodedConfig: String
     ): String {
         val relativeConfigPath = "config.json"
-        val encodedConfig = LocalConfigurationClient.jsonReader.encodeToString(
+        uploadContent(encodedConfig.encodeToByteArray(), "$deploymentPath/$relativeConfigPath")
+        return relativeConfigPath
+    }
+
+    private fun encodeConfig(nodeConfiguration: Config.WithInjectedCentralNodeVars): String {
+        return LocalConfigurationClient.jsonReader.encodeToString(
             Config.WithInjectedCentralNodeVars,
             nodeConfiguration
         )
-        uploadContent(encodedConfig.encodeToByteArray(), "$deploymentPath/$relativeConfigPath")
-        return relativeConfigPath
     }
 
     private fun resolveConfigForNode(it: Config.NodeConfig.WithInjectedCentralNodeVars): Config.WithInjectedCentralNodeVars {
@@ -210,19 +320,19 @@ class RemoteNodeDevicePlugin(
         selfJar: Path,
         appPackage: Path,
         testPackage: Path
-    ): String {
+    ): Pair<String, String> {
         val binDir = selfJar.parent.resolveSibling("bin")
         val selfBin = binDir.resolve("sift")
 
         val relativeBinPath = "bin/${selfBin.fileName}"
         val relativeJarPath = "lib/${selfJar.fileName}"
-        uploadFiles(
-            selfBin to "$deploymentPath/$relativeBinPath",
-            selfJar to "$deploymentPath/$relativeJarPath",
-            appPackage to "$deploymentPath/$relativeAutPath",
-            testPackage to "$deploymentPath/$relativeTestPath",
+        val fingerprint = DeploymentStore(this, deploymentPath).deploy(
+            selfBin to relativeBinPath,
+            selfJar to relativeJarPath,
+            appPackage to relativeAutPath,
+            testPackage to relativeTestPath,
         )
-        return relativeBinPath
+        return relativeBinPath to fingerprint
     }
 
     private fun getSelfJarPath(): Path {
@@ -3,6 +3,7 @@ package io.engenious.sift.node.central.plugin
 import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.result.RunTesult
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.BucketTestCaseRunner
 import com.github.tarcv.tongs.api.run.TestCaseRunner
 import com.github.tarcv.tongs.api.run.TestCaseRunnerArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunnerContext
@@ -12,19 +13,44 @@ import com.github.tarcv.tongs.suite.ApkTestCase
 
 class RemoteNodeDeviceRunnerPlugin : TestCaseRunnerFactory<TestCaseRunner> {
     override fun testCaseRunners(context: TestCaseRunnerContext): Array<out TestCaseRunner> {
-        return arrayOf(object : TestCaseRunner {
+        // Buckets are sent to a node as a whole, so the node always has the next test case queued.
+        // Test cases that the node has not started yet are given back when another device becomes idle.
+        return arrayOf(object : BucketTestCaseRunner {
             override fun run(arguments: TestCaseRunnerArguments): RunTesult {
+                return runTests(listOf(arguments)).single()
+                    ?: throw IllegalStateException("Got no result for a test case")
+            }
+
+            override fun runBucket(arguments: List<TestCaseRunnerArguments>): List<TestCaseRunResult?> {
+                return runTests(arguments)
+            }
+
+            private fun runTests(arguments: List<TestCaseRunnerArguments>): List<TestCaseRunResult?> {
                 val device = context.device as RemoteNodeDevice
                 val resultTimeoutMs = context.configuration.testOutputTimeout + 60_000
-                return device.runTest(context.pool, arguments.testCaseEvent.testCase, resultTimeoutMs)
-                    .let { it as TestCaseRunResult }
-                    .copy(
+                val results = arrayOfNulls<TestCaseRunResult>(arguments.size)
+                device.runTests(
+                    context.pool,
+                    arguments.map { it.testCaseEvent.testCase },
+                    resultTimeoutMs,
+                    isReclaimRequested = { index ->
+                        arguments[index].reclaimRequests.isRequested()
+                    }
+                ) { index, result ->
+                    val testArguments = arguments[index]
+                    val fixedResult = result.copy(
                         pool = context.pool,
                         device = context.device,
-                        testCase = arguments.testCaseEvent.testCase,
-                        baseTotalFailureCount = arguments.testCaseEvent.totalFailureCount,
-                        startTimestampUtc = arguments.startTimestampUtc
+                        testCase = testArguments.testCaseEvent.testCase,
+                        baseTotalFailureCount = testArguments.testCaseEvent.totalFailureCount,
+                        startTimestampUtc = testArguments.startTimestampUtc
                     )
+                    results[index] = fixedResult
+
+                    // Lets the result reach reports while the rest of the bucket is still executed
+                    testArguments.earlyResults.onResult(fixedResult)
+                }
+                return results.toList()
             }
 
             override fun supports(device: Device, testCase: TestCase): Boolean {
@@ -1,5 +1,6 @@
 package io.engenious.sift.node.central.plugin
 
+import com.github.tarcv.tongs.api.testcases.TestCase
 import io.engenious.sift.Config
 
 class RemoteSshNode(
@@ -8,4 +9,22 @@ class RemoteSshNode(
 ) {
     val name: String = config.name
     val uniqueIdentifier: Any = config
+
+    val isAlive: Boolean
+        get() = client.isAlive
+
+    @Volatile
+    private var testCaseHandles: Map<String, Int> = emptyMap()
+
+    /**
+     * @param testCases test cases in the same order as the node reported them
+     */
+    fun setTestCases(testCases: List<TestCase>) {
+        testCaseHandles = testCases.withIndex().associate { (index, testCase) -> testCase.toString() to index }
+    }
+
+    fun testCaseHandleOf(testCase: TestCase): Int {
+        return testCaseHandles[testCase.toString()]
+            ?: throw IllegalArgumentException("Test case $testCase is not known to node $name")
+    }
 }
@@ -0,0 +1,164 @@
+package io.engenious.sift.node.central.plugin
+
+import com.android.annotations.concurrency.GuardedBy
+import io.engenious.sift.node.remote.ResultEventFeed
+import okhttp3.Call
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okio.BufferedSource
+import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+/**
+ * Follows the server-sent event stream in which a node announces finished test tasks (see [ResultEventFeed]),
+ * so that results are taken as soon as they are ready instead of waiting for them in the order of submission
+ */
+class ResultEventStream(
+    private val url: String,
+    baseClient: OkHttpClient
+) : Closeable {
+    private val client = baseClient.newBuilder()
+        .readTimeout(ResultEventFeed.keepAliveMillis * 3, TimeUnit.MILLISECONDS)
+        .build()
+
+    private val lock = Object()
+    @GuardedBy("lock") private val finishedTaskIds = HashSet<String>()
+    @GuardedBy("lock") private var lastEventId: String? = null
+    @GuardedBy("lock") private var currentCall: Call? = null
+    @GuardedBy("lock") private var isClosed = false
+
+    /**
+     * Events can be missed while the stream is not connected, so callers should also poll for results then
+     */
+    @Volatile
+    var isConnected = false
+        private set
+
+    private val follower = thread(start = false, isDaemon = true, name = "NodeEvents-$url") {
+        follow()
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(ResultEventStream::class.java)
+
+        private const val reconnectDelayMillis = 1_000L
+    }
+
+    fun start() {
+        follower.start()
+    }
+
+    /**
+     * Waits until at least one of [taskIds] is finished or [waitMillis] pass
+     * @return finished tasks among [taskIds], they are not returned again
+     */
+    fun awaitFinished(taskIds: Collection<String>, waitMillis: Long): Set<String> {
+        synchronized(lock) {
+            val deadline = System.currentTimeMillis() + waitMillis
+            while (taskIds.none { it in finishedTaskIds }) {
+                val timeLeft = deadline - System.currentTimeMillis()
+                if (timeLeft <= 0 || isClosed) {
+                    return emptySet()
+                }
+                lock.wait(timeLeft)
+            }
+            return taskIds
+                .filterTo(HashSet()) { it in finishedTaskIds }
+                .also { finishedTaskIds.removeAll(it) }
+        }
+    }
+
+    /**
+     * Drops an event that is not needed anymore, e.g. because the result was taken without waiting for the event
+     */
+    fun forget(taskId: String) {
+        synchronized(lock) {
+            finishedTaskIds.remove(taskId)
+        }
+    }
+
+    private fun follow() {
+        while (true) {
+            val call = synchronized(lock) {
+                if (isClosed) {
+                    return
+                }
+                Request.Builder()
+                    .url(url)
+                    .header("Accept", "text/event-stream")
+                    .apply {
+                        lastEventId?.let { header("Last-Event-ID", it) }
+                    }
+                    .build()
+                    .let { client.newCall(it) }
+                    .also { currentCall = it }
+            }
+
+            try {
+                call.execute().use { response ->
+                    if (!response.isSuccessful) {
+                        throw IOException("Got an error from a node: ${response.code}")
+                    }
+                    isConnected = true
+                    readEvents(response.body!!.source())
+                }
+            } catch (e: IOException) {
+                if (isConnected && !call.isCanceled()) {
+                    logger.warn("Lost the result event stream of a node, reconnecting", e)
+                } else {
+                    logger.debug("Failed to connect to the result event stream of a node", e)
+                }
+            } finally {
+                isConnected = false
+            }
+
+            try {
+                Thread.sleep(reconnectDelayMillis)
+            } catch (e: InterruptedException) {
+                return
+            }
+        }
+    }
+
+    internal fun readEvents(source: BufferedSource) {
+        var id: String? = null
+        var data: String? = null
+        while (true) {
+            val line = source.readUtf8Line() ?: return
+            when {
+                line.isEmpty() -> {
+                    if (data != null) {
+                        onEvent(id, data)
+                    }
+                    id = null
+                    data = null
+                }
+                line.startsWith(":") -> Unit // keep alive comment
+                line.startsWith("id:") -> id = line.substringAfter(':').trim()
+                line.startsWith("data:") -> data = line.substringAfter(':').trim()
+            }
+        }
+    }
+
+    private fun onEvent(id: String?, taskId: String) {
+        synchronized(lock) {
+            finishedTaskIds.add(taskId)
+            if (id != null) {
+                lastEventId = id
+            }
+            lock.notifyAll()
+        }
+    }
+
+    override fun close() {
+        synchronized(lock) {
+            isClosed = true
+            currentCall?.cancel()
+            lock.notifyAll()
+        }
+        follower.interrupt()
+    }
+}
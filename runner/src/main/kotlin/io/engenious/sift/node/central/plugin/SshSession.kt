@@ -1,8 +1,10 @@
 package io.engenious.sift.node.central.plugin
 
+import com.android.annotations.concurrency.GuardedBy
 import io.engenious.sift.exceptions.ConfigurationException
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.runInterruptible
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeout
 import org.apache.sshd.client.SshClient
@@ -19,79 +21,100 @@ import org.slf4j.LoggerFactory
 import java.io.ByteArrayInputStream
 import java.io.Closeable
 import java.io.File
+import java.io.FileInputStream
 import java.io.OutputStream
 import java.io.PipedInputStream
 import java.io.PipedOutputStream
 import java.nio.file.Path
 import java.nio.file.Paths
 import java.security.KeyPair
-import java.util.concurrent.Callable
-import java.util.concurrent.ExecutionException
-import java.util.concurrent.ExecutorService
-import java.util.concurrent.Executors
+import java.util.Collections
 import java.util.concurrent.TimeUnit
 import kotlin.concurrent.thread
 
-class SshSession private constructor( // TODO: refactor this whole class, especially timeout and singleThreadExecutor
+class SshSession private constructor(
     private val name: String,
-    private val session: ClientSession,
-    private val dispatcher: ExecutorService
+    private val session: ClientSession
 ) {
+    @Volatile
     private var open = true
-    private val channels = mutableListOf<Channel>()
+    private val channels = Collections.synchronizedList(mutableListOf<Channel>())
 
     companion object {
         private const val defaultTimeoutSeconds = 30L
         private const val defaultTimeout = 30L * 1000
         private const val shortOperationTimeout = 15_000L
 
-        fun create(name: String, host: String, port: Int, username: String, privateKeyPath: String): SshSession {
-            val dispatcher = Executors.newSingleThreadExecutor()
+        private val clientLock = Any()
+        @GuardedBy("clientLock")
+        private var sharedClient: SshClient? = null
+        @GuardedBy("clientLock")
+        private var sharedClientUsers = 0
 
-            val client = SshClient.setUpDefaultClient() // TODO: use same client instance for all sessions
-            client.start()
+        fun create(name: String, host: String, port: Int, username: String, privateKeyPath: String): SshSession {
+            val client = acquireClient()
 
             return try {
-                dispatcher
-                    .submit(
-                        Callable {
-                            val session = try {
-                                val session = client
-                                    .connect(username, host, port)
-                                    .verify(defaultTimeoutSeconds, TimeUnit.SECONDS).session
-                                try {
-                                    session.addPublicKeyIdentity(readKey(privateKeyPath))
-                                    session.auth().verify(defaultTimeoutSeconds, TimeUnit.SECONDS)
-                                    session
-                                } catch (t: Throwable) {
-                                    session.close()
-                                    throw t
-                                }
-                            } catch (t: Throwable) {
-                                try {
-                                    client.stop()
-                                } finally {
-                                    dispatcher.close()
-                                }
-                                throw t
-                            }
-
-                            SshSession(name, session, dispatcher)
-                        }
-                    )
-                    .get(defaultTimeoutSeconds, TimeUnit.SECONDS)
-            } catch (e: ExecutionException) {
-                val wrappedException = e.cause ?: e
+                withSshDispatcher(defaultTimeout) {
+                    val session = client
+                        .connect(username, host, port)
+                        .verify(defaultTimeoutSeconds, TimeUnit.SECONDS).session
+                    try {
+                        session.addPublicKeyIdentity(readKey(privateKeyPath))
+                        session.auth().verify(defaultTimeoutSeconds, TimeUnit.SECONDS)
+                        SshSession(name, session)
+                    } catch (t: Throwable) {
+                        session.close()
+                        throw t
+                    }
+                }
+            } catch (t: Exception) {
+                releaseClient()
                 throw ConfigurationException(
                     "Cannot connect to node '$name' ($host:$port). Please verify host, port, login and key file are correct",
-                    wrappedException
+                    t
                 )
             }
         }
 
-        private fun ExecutorService.close() {
-            Closeable { this@close.shutdownNow() }.use {
-                this@close.shutdown()
+        /**
+         * All sessions share one client (and so its IO thread pool), it is stopped when the last session is closed
+         */
+        private fun acquireClient(): SshClient {
+            synchronized(clientLock) {
+                val client = sharedClient
+                    ?: SshClient.setUpDefaultClient()
+                        .apply { start() }
+                        .also { sharedClient = it }
+                sharedClientUsers += 1
+                return client
+            }
+        }
+
+        private fun releaseClient() {
+            synchronized(clientLock) {
+                sharedClientUsers -= 1
+                if (sharedClientUsers == 0) {
+                    sharedClient?.stop()
+                    sharedClient = null
+                }
+            }
+        }
+
+        /**
+         * Runs a blocking SSH operation with a timeout.
+         * Operations are not serialized, so channels of the same or different sessions can be used concurrently.
+         */
+        private inline fun <T> withSshDispatcher(
+            timeoutMs: Long,
+            crossinline block: () -> T
+        ): T {
+            return runBlocking {
+                withTimeout(timeoutMs) {
+                    runInterruptible(Dispatchers.IO) {
+                        block()
+                    }
+                }
             }
         }
 
@@ -203,21 +226,24 @@ class SshSession private constructor( // TODO: refactor this whole class, especi
     }
 
     fun close() {
+        if (!open) return
         open = false
 
-        Closeable { dispatcher.close() }.use {
+        try {
             withSshDispatcher(defaultTimeout) {
-                channels.forEach {
-                    try {
-                        it.close()
-                    } catch (e: Exception) {}
+                synchronized(channels) {
+                    channels.forEach {
+                        try {
+                            it.close()
+                        } catch (e: Exception) {}
+                    }
                 }
                 try {
-                    try {
-                        session.close(true)
-                    } catch (e: Exception) {}
+                    session.close(true)
                 } catch (e: Exception) {}
             }
+        } finally {
+            releaseClient()
         }
     }
 
@@ -230,12 +256,24 @@ class SshSession private constructor( // TODO: refactor this whole class, especi
         }
     }
 
-    fun uploadFiles(vararg pairs: Pair<Path, String>) {
+    fun stopLocalPortForwarding(localPort: Int) {
+        withSshDispatcher(shortOperationTimeout) {
+            session.stopLocalPortForwarding(
+                SshdSocketAddress(SshdSocketAddress.LOCALHOST_IPV4, localPort)
+            )
+        }
+    }
+
+    /**
+     * Uploads [source] starting from [offset] by appending to [targetPath]
+     */
+    fun uploadFileRemainder(source: Path, targetPath: String, offset: Long) {
         createSftpClient().use { client ->
-            pairs.forEach {
-                client.createParentPath(it.second)
-                client.createFile(it.second) { out ->
-                    it.first.toFile().inputStream().copyTo(out)
+            client.createParentPath(targetPath)
+            client.appendFile(targetPath) { out ->
+                FileInputStream(source.toFile()).use { input ->
+                    input.channel.position(offset)
+                    input.copyTo(out)
                 }
             }
         }
@@ -266,19 +304,6 @@ class SshSession private constructor( // TODO: refactor this whole class, especi
         }
     }
 
-    private inline fun <T> withSshDispatcher(
-        timeoutMs: Long,
-        crossinline block: () -> T
-    ): T {
-        return dispatcher
-            .submit(
-                Callable {
-                    block()
-                }
-            )
-            .get(timeoutMs, TimeUnit.MILLISECONDS)
-    }
-
     private inner class SftpWrapper(
         private val sftpClient: SftpClient
     ) : Closeable {
@@ -308,6 +333,17 @@ class SshSession private constructor( // TODO: refactor this whole class, especi
             )
         }
 
+        fun appendFile(
+            targetPath: String,
+            block: (OutputStream) -> Unit
+        ) {
+            write(
+                targetPath,
+                listOf(SftpClient.OpenMode.Create, SftpClient.OpenMode.Append, SftpClient.OpenMode.Write),
+                block
+            )
+        }
+
         override fun close() {
             withSshDispatcher(shortOperationTimeout) {
                 sftpClient.close()
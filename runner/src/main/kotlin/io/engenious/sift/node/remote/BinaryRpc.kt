@@ -0,0 +1,126 @@
+package io.engenious.sift.node.remote
+
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.cbor.Cbor
+import org.http4k.core.Body
+import org.http4k.core.HttpHandler
+import org.http4k.core.Request
+import org.http4k.core.Response
+import org.http4k.core.Status
+import org.http4k.jsonrpc.ErrorHandler
+import org.http4k.jsonrpc.ErrorMessage
+import org.http4k.routing.path
+import java.nio.ByteBuffer
+
+/**
+ * Compact alternative to JSON-RPC for frequent calls. The method name is a part of the path,
+ * parameters and results are encoded with CBOR.
+ * Like in JSON-RPC, each response is a [Reply] that holds either a result or an error,
+ * and [errorHandler] maps exceptions of handlers to errors.
+ * Nodes announce support for it in [Node.NodeInfo.codecs].
+ */
+@OptIn(ExperimentalSerializationApi::class)
+class BinaryRpc(
+    private val errorHandler: ErrorHandler,
+    configure: Builder.() -> Unit
+) : HttpHandler {
+    private val methods: Map<String, Method<*, *>> = Builder().apply(configure).methods
+
+    class Builder {
+        internal val methods = HashMap<String, Method<*, *>>()
+
+        fun <Rq, Rs> method(
+            name: String,
+            requestSerializer: KSerializer<Rq>,
+            responseSerializer: KSerializer<Rs>,
+            handler: (Rq) -> Rs
+        ) {
+            methods[name] = Method(requestSerializer, responseSerializer, handler)
+        }
+    }
+
+    internal class Method<Rq, Rs>(
+        private val requestSerializer: KSerializer<Rq>,
+        private val responseSerializer: KSerializer<Rs>,
+        private val handler: (Rq) -> Rs
+    ) {
+        fun invoke(request: Request, errorHandler: ErrorHandler): Body {
+            val params = try {
+                decode(requestSerializer, request.body.stream.use { it.readBytes() })
+            } catch (e: SerializationException) {
+                return encodeError(responseSerializer, ErrorMessage.InvalidParams)
+            }
+            val result = try {
+                handler(params)
+            } catch (e: Exception) {
+                return encodeError(responseSerializer, errorHandler(e) ?: ErrorMessage.InternalError)
+            }
+            return encode(Reply.serializer(responseSerializer), Reply(result = result))
+        }
+    }
+
+    /**
+     * @property error set when the call failed, [result] is null then
+     */
+    @Serializable
+    class Reply<T>(
+        val result: T? = null,
+        val error: Error? = null
+    )
+
+    /**
+     * Same as the error object of JSON-RPC
+     */
+    @Serializable
+    data class Error(
+        val code: Int,
+        val message: String
+    )
+
+    override fun invoke(request: Request): Response {
+        val method = request.path("method")?.let { methods[it] }
+        val body = method?.invoke(request, errorHandler)
+            ?: encodeError(NoResult.serializer(), ErrorMessage.MethodNotFound)
+        return Response(Status.OK)
+            .header("Content-Type", contentType)
+            .body(body)
+    }
+
+    @Serializable
+    private class NoResult
+
+    companion object {
+        const val codecName = "cbor"
+        const val contentType = "application/cbor"
+
+        private val cbor = Cbor {
+            ignoreUnknownKeys = true
+        }
+
+        fun <T> encode(serializer: KSerializer<T>, value: T): Body {
+            return Body(ByteBuffer.wrap(cbor.encodeToByteArray(serializer, value)))
+        }
+
+        fun <T> decode(serializer: KSerializer<T>, bytes: ByteArray): T = cbor.decodeFromByteArray(serializer, bytes)
+
+        /**
+         * @return the result of a call, see [Reply]
+         * @throws RuntimeException when the call failed
+         */
+        fun <T> decodeReply(serializer: KSerializer<T>, bytes: ByteArray): T {
+            val reply = decode(Reply.serializer(serializer), bytes)
+            if (reply.error != null) {
+                throw RuntimeException(reply.error.toString())
+            }
+            @Suppress("UNCHECKED_CAST") // result is only null for calls that return null
+            return reply.result as T
+        }
+
+        private fun <T> encodeError(serializer: KSerializer<T>, error: ErrorMessage): Body {
+            return encode(Reply.serializer(serializer), Reply(error = Error(error.code, error.message)))
+        }
+    }
+}
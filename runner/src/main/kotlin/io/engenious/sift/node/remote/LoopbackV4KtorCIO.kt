@@ -1,29 +1,68 @@
 package io.engenious.sift.node.remote
 
 import io.ktor.application.ApplicationCallPipeline.ApplicationPhase.Call
+import io.ktor.http.CacheControl
+import io.ktor.http.ContentType
+import io.ktor.request.header
+import io.ktor.request.path
+import io.ktor.response.cacheControl
+import io.ktor.response.respondTextWriter
 import io.ktor.server.cio.CIO
 import io.ktor.server.cio.CIOApplicationEngine
 import io.ktor.server.engine.embeddedServer
 import io.ktor.server.engine.stop
 import io.ktor.util.KtorExperimentalAPI
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import org.http4k.core.HttpHandler
 import org.http4k.server.Http4kServer
 import org.http4k.server.ServerConfig
 import org.http4k.server.asHttp4k
 import org.http4k.server.fromHttp4K
+import java.io.Writer
 import java.util.concurrent.TimeUnit
 
 /**
- * Custom KtorCIO implementation that binds to 127.0.0.1 interface
+ * Custom KtorCIO implementation that binds to 127.0.0.1 interface.
+ * Paths in [eventStreams] are served as server-sent event streams, which http4k can't flush by itself.
  *
  * Based on http4k-server-ktorcio by http4k contributors which is under Apache License Version 2.0, January 2004
  */
-class LoopbackV4KtorCIO(val port: Int = 8000) : ServerConfig {
+class LoopbackV4KtorCIO(
+    val port: Int = 8000,
+    private val eventStreams: Map<String, EventStream> = emptyMap()
+) : ServerConfig {
+    fun interface EventStream {
+        /**
+         * Writes events until the stream ends, blocking the calling thread
+         */
+        fun write(lastEventId: String?, writer: Writer)
+    }
+
+
     @OptIn(KtorExperimentalAPI::class)
     override fun toServer(httpHandler: HttpHandler): Http4kServer = object : Http4kServer {
         private val engine: CIOApplicationEngine = embeddedServer(CIO, port, "127.0.0.1") {
             intercept(Call) {
-                with(context) { response.fromHttp4K(httpHandler(request.asHttp4k())) }
+                val eventStream = eventStreams[context.request.path()]
+                if (eventStream != null) {
+                    context.response.cacheControl(CacheControl.NoCache(null))
+                    context.respondTextWriter(ContentType.Text.EventStream) {
+                        val writer = this
+                        withContext(Dispatchers.IO) {
+                            eventStream.write(context.request.header("Last-Event-ID"), writer)
+                        }
+                    }
+                    return@intercept finish()
+                }
+
+                with(context) {
+                    // Handlers may block (e.g. long polling for results), so keep them off the engine threads
+                    val http4kResponse = withContext(Dispatchers.IO) {
+                        httpHandler(request.asHttp4k())
+                    }
+                    response.fromHttp4K(http4kResponse)
+                }
                 return@intercept finish()
             }
         }
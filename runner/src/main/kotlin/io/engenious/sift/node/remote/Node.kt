@@ -12,6 +12,7 @@ import com.github.tarcv.tongs.api.run.TestCaseRunner
 import com.github.tarcv.tongs.api.run.TestCaseRunnerContext
 import com.github.tarcv.tongs.api.testcases.TestCase
 import com.github.tarcv.tongs.injector.TestCaseRunnerManager
+import com.github.tarcv.tongs.model.AndroidDevice
 import com.github.tarcv.tongs.model.TestCaseEventQueue
 import io.engenious.sift.Config
 import io.engenious.sift.applyLocalNodeConfiguration
@@ -31,7 +32,6 @@ import io.engenious.sift.node.remote.plugins.blocker.LoopingTestCaseRunnerFactor
 import io.engenious.sift.node.serialization.RemoteDevice
 import io.engenious.sift.node.serialization.RemoteTestCase
 import io.engenious.sift.node.serialization.RemoteTestCaseRunResult
-import io.engenious.sift.node.serialization.deviceIdentifierAsString
 import io.engenious.sift.nodeDevicesStrategy
 import io.engenious.sift.setupCommonTongsConfiguration
 import kotlinx.coroutines.CompletableDeferred
@@ -40,11 +40,17 @@ import kotlinx.coroutines.runBlocking
 import kotlinx.serialization.Serializable
 import org.koin.core.context.KoinContextHandler
 import org.slf4j.LoggerFactory
+import java.io.File
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
 import java.util.Collections
+import java.util.UUID
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 import java.util.concurrent.atomic.AtomicInteger
 import kotlin.concurrent.thread
 
@@ -53,16 +59,28 @@ class Node(
     private val nodeShutdownSignaller: CountDownLatch
 ) {
     private val tempOutputPath: Path
+    private val resultOutbox: ResultOutbox
+    val artifactStore: NodeArtifactStore
     init {
         val thisNode = config.nodes.single()
         val tempRoot = Files.createDirectories(Paths.get(thisNode.deploymentPath, "tmp")) // TODO: delete on shutdown
         tempOutputPath = Files.createTempDirectory(tempRoot, "output")
+
+        val outboxPath = Paths.get(thisNode.deploymentPath, "outbox").toFile()
+        resultOutbox = ResultOutbox(outboxPath)
+        artifactStore = NodeArtifactStore(
+            Files.createTempDirectory(tempRoot, "artifacts").toFile(),
+            File(outboxPath, "artifacts.log"),
+            restore = !resultOutbox.isEmpty
+        )
     }
 
     private val globalLock = Any()
     @GuardedBy("globalLock") private var operator: Thread? = null
     @GuardedBy("globalLock") private val runnerCache: MutableMap<Device, TestCaseRunner> = HashMap()
     @GuardedBy("globalLock") private lateinit var myInfo: NodeInfo
+    @GuardedBy("globalLock") private lateinit var deviceHandles: List<Device>
+    @GuardedBy("globalLock") private lateinit var testCaseHandles: List<TestCase>
     private val looperShutdownSignaller = CountDownLatch(1)
     private val delayedExceptions = Collections.synchronizedList(mutableListOf<Throwable>())
     private val pool = CompletableDeferred<Pool>()
@@ -70,23 +88,40 @@ class Node(
     private val testCases = CompletableDeferred<Set<TestCase>>()
     private val testQueue = CompletableDeferred<TestCaseEventQueue>()
     private val testTaskCounter = AtomicInteger()
+
+    // Keeps task ids unique across restarts, as results of previous node processes can be restored from the outbox
+    private val taskIdPrefix = UUID.randomUUID().toString().substringBefore('-')
     private val testCaseRunnerManager by lazy {
         @Suppress("UNCHECKED_CAST")
         KoinContextHandler.get().get<TongsRunner>()
             .extractProperty("testCaseRunnerManager") as TestCaseRunnerManager
     }
-    private val testResultContainer = Collections.synchronizedMap(mutableMapOf<String, TestCaseRunResult>())
-    private val originalTestCases = Collections.synchronizedMap(mutableMapOf<String, TestCase>())
+    private val testResultContainer = ConcurrentHashMap<String, CompletableFuture<RemoteTestCaseRunResult>>()
+    private val queuedEvents = ConcurrentHashMap<String, TestCaseEvent>()
+    val resultEvents = ResultEventFeed()
+
+    private val fingerprint = System.getenv(fingerprintEnvironmentVariable) ?: ""
 
     companion object {
+        /**
+         * Identifies binaries and configuration a node was started with, so that a warm node is reused only by runs
+         * with the same ones
+         */
+        const val fingerprintEnvironmentVariable = "SIFT_NODE_FINGERPRINT"
+
         private const val siftEventIndexKey = "__siftEventIndexKey"
         private val logger = LoggerFactory.getLogger(Node::class.java)
     }
 
+    /**
+     * Later calls refer to devices and test cases by their indexes in [devices] and [testCases]
+     * @property codecs binary codecs the node accepts in addition to JSON-RPC
+     */
     @Serializable
     class NodeInfo(
         val devices: List<RemoteDevice>,
-        val testCases: List<RemoteTestCase>
+        val testCases: List<RemoteTestCase>,
+        val codecs: List<String> = emptyList()
     )
 
     @ExperimentalCoroutinesApi
@@ -143,7 +178,28 @@ class Node(
                                     LoopingTestCaseRunnerFactory(looperShutdownSignaller),
                                     ResultListeningPlugin {
                                         val taskId = it.testCase.properties[siftEventIndexKey]
-                                        testResultContainer[taskId] = it
+                                        if (taskId != null) {
+                                            queuedEvents.remove(taskId)
+
+                                            // Artifact files of the result are served to the central node,
+                                            // so they should be transferred from the device first
+                                            val artifactJobs = (it.device as? AndroidDevice)?.artifacts?.whenIdle()
+                                                ?: CompletableFuture.completedFuture<Void>(null)
+                                            artifactJobs
+                                                .exceptionally { e ->
+                                                    logger.warn("Not all artifacts of result $taskId were transferred", e)
+                                                    null
+                                                }
+                                                .thenRun {
+                                                    storeResult(taskId, it)
+                                                    resultEvents.publish(taskId)
+                                                }
+                                                .whenComplete { _, e ->
+                                                    if (e != null) {
+                                                        logger.error("Failed to store result $taskId", e)
+                                                    }
+                                                }
+                                        }
                                         logger.info("Received result $taskId from a runner")
                                     }
                                 )
@@ -158,32 +214,32 @@ class Node(
             }
         }
 
-        myInfo = runBlocking {
+        runBlocking {
             // TODO: interrupt operator thread on cancel
-            NodeInfo(
-                devices.await()
-                    .filter { it != LoopingDevice }
-                    .map(RemoteDevice::fromLocalDevice),
-                testCases.await()
-                    .filter { it != loopingTestCase }
-                    .map { RemoteTestCase.fromTestCase(it) }
-            )
+            deviceHandles = devices.await()
+                .filter { it != LoopingDevice }
+            testCaseHandles = testCases.await()
+                .filter { it != loopingTestCase }
         }
+        myInfo = NodeInfo(
+            deviceHandles.map(RemoteDevice::fromLocalDevice),
+            testCaseHandles.map { RemoteTestCase.fromTestCase(it) },
+            listOf(BinaryRpc.codecName)
+        )
 
         this.operator = operator
         myInfo
     }
 
+    /**
+     * @property deviceHandle index of the device in [NodeInfo.devices]
+     * @property testCaseHandle index of the test case in [NodeInfo.testCases]
+     */
     @Serializable
     data class RunTest(
-        val deviceId: String,
-        val testCase: String
-    ) {
-        constructor(device: Device, testCase: TestCase) : this(
-            device.deviceIdentifierAsString(),
-            testCase.toString()
-        )
-    }
+        val deviceHandle: Int,
+        val testCaseHandle: Int
+    )
 
     @Serializable
     data class TestRunRequestResult(val taskId: String)
@@ -197,16 +253,10 @@ class Node(
             val pool = runBlocking {
                 pool.await()
             }
-            val device = runBlocking {
-                devices.await()
-                    .singleOrNull { it.deviceIdentifierAsString() == params.deviceId }
-                    ?: throw IllegalArgumentException("No such device: ${params.deviceId}")
-            }
-            val testCase = runBlocking {
-                testCases.await()
-                    .singleOrNull { it.toString() == params.testCase }
-                    ?: throw IllegalArgumentException("No such test case: ${params.testCase}")
-            }
+            val device = deviceHandles.getOrNull(params.deviceHandle)
+                ?: throw IllegalArgumentException("No such device: ${params.deviceHandle}")
+            val testCase = testCaseHandles.getOrNull(params.testCaseHandle)
+                ?: throw IllegalArgumentException("No such test case: ${params.testCaseHandle}")
 
             val runner = runnerCache.getOrPut(device) {
                 testCaseRunnerManager
@@ -221,9 +271,10 @@ class Node(
                     ?: throw IllegalArgumentException("Unknown test case type: $testCase")
             }
 
-            val taskId = testTaskCounter.getAndIncrement().toString()
-            originalTestCases[taskId] = testCase
+            val taskId = "$taskIdPrefix-${testTaskCounter.getAndIncrement()}"
+            resultFutureFor(taskId)
             val testTask = createTestTask(taskId, testCase, device, runner)
+            queuedEvents[taskId] = testTask
 
             testQueue
                 .getCompleted()
@@ -260,9 +311,35 @@ class Node(
         }
     }
 
+    @Serializable
+    data class CancelTest(val taskId: String)
+
+    @Serializable
+    data class CancelTestResult(val cancelled: Boolean)
+
+    /**
+     * Takes back a test case that no device of this node has started yet,
+     * so that the central node can execute it elsewhere
+     */
+    fun cancelTest(params: CancelTest): CancelTestResult {
+        val event = queuedEvents.remove(params.taskId)
+            ?: return CancelTestResult(false)
+        if (!testQueue.getCompleted().remove(event)) {
+            // A device has already taken the test case, its result will be reported as usual
+            return CancelTestResult(false)
+        }
+
+        testResultContainer.remove(params.taskId)
+        return CancelTestResult(true)
+    }
+
+    /**
+     * @property waitMillis how long to wait for the result when it is not ready yet, 0 means not to wait
+     */
     @Serializable
     data class TakeRunResult(
-        val taskId: String
+        val taskId: String,
+        val waitMillis: Long = 0
     )
 
     @Serializable
@@ -270,20 +347,79 @@ class Node(
         val result: RemoteTestCaseRunResult?
     )
 
+    /**
+     * Returns the same result until it is acknowledged with [ackResults],
+     * so a result is not lost when the connection drops while it is sent
+     */
     fun takeRunResult(params: TakeRunResult): TakeRunResultResult {
-        val result = testResultContainer.remove(params.taskId) ?: return TakeRunResultResult(null)
-
-        val originalTestCase = originalTestCases.remove(params.taskId) ?: throw IllegalStateException()
-        return TakeRunResultResult(
-            RemoteTestCaseRunResult.fromTestCaseRunResult(
-                /*
-                        Test case task was created with a modified test case (for proper scheduling),
-                        thus this result links to that modified test case.
-                        Make it link to the unmodified one instead.
-                    */
-                result.copy(testCase = originalTestCase)
-            )
-        )
+        resultOutbox.get(params.taskId)
+            ?.let { return TakeRunResultResult(it) }
+
+        val resultFuture = testResultContainer[params.taskId]
+            ?: throw IllegalArgumentException("No such task: ${params.taskId}")
+        val result = try {
+            resultFuture.get(params.waitMillis, TimeUnit.MILLISECONDS)
+        } catch (e: TimeoutException) {
+            return TakeRunResultResult(null)
+        }
+        return TakeRunResultResult(result)
+    }
+
+    @Serializable
+    data class AckResults(val taskIds: List<String>)
+
+    @Serializable
+    data class AckResultsResult(val pendingResults: Int)
+
+    /**
+     * Confirms that the central node has received the results, so they are removed from the outbox
+     */
+    fun ackResults(params: AckResults): AckResultsResult {
+        testResultContainer.keys.removeAll(params.taskIds)
+        return AckResultsResult(resultOutbox.acknowledge(params.taskIds))
+    }
+
+    private fun storeResult(taskId: String, result: TestCaseRunResult) {
+        val resultFuture = resultFutureFor(taskId)
+        try {
+            // The central node knows the test case and the device of the task, so the result doesn't include them
+            val remoteResult = RemoteTestCaseRunResult.fromTestCaseRunResult(result, artifactStore)
+            resultOutbox.put(taskId, remoteResult)
+            resultFuture.complete(remoteResult)
+        } catch (e: Exception) {
+            resultFuture.completeExceptionally(e)
+        }
+    }
+
+    private fun resultFutureFor(taskId: String): CompletableFuture<RemoteTestCaseRunResult> {
+        return testResultContainer.computeIfAbsent(taskId) { CompletableFuture() }
+    }
+
+    @Serializable
+    data class NodeStatus(val fingerprint: String)
+
+    fun status(): NodeStatus = NodeStatus(fingerprint)
+
+    @Serializable
+    data class DetachResult(val cancelledTests: Int)
+
+    /**
+     * Ends a run without stopping the node, so that it is kept warm for next runs
+     */
+    fun detach(): DetachResult {
+        val cancelledTests = queuedEvents.keys
+            .count { cancelTest(CancelTest(it)).cancelled }
+        discardResults()
+        return DetachResult(cancelledTests)
+    }
+
+    /**
+     * Results that were not acknowledged by the end of a run are not needed by anyone anymore
+     */
+    private fun discardResults() {
+        testResultContainer.clear()
+        resultOutbox.clear()
+        artifactStore.clear()
     }
 
     fun shutdown(): Unit = synchronized(globalLock) {
@@ -296,7 +432,9 @@ class Node(
                     join(15_000)
                 }
             }
+            discardResults()
         } finally {
+            resultEvents.close()
             nodeShutdownSignaller.countDown()
         }
     }
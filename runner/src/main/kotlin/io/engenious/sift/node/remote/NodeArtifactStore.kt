@@ -0,0 +1,105 @@
+package io.engenious.sift.node.remote
+
+import com.android.annotations.concurrency.GuardedBy
+import io.engenious.sift.node.serialization.ArtifactRegistry
+import org.http4k.core.HttpHandler
+import org.http4k.core.Response
+import org.http4k.core.Status
+import org.http4k.routing.path
+import java.io.File
+import java.io.FileOutputStream
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Serves result files over a separate HTTP endpoint, so that they are streamed to the central node
+ * instead of being embedded into JSON-RPC responses.
+ * Registrations are written to [journalFile], so that results restored from [ResultOutbox] can still be downloaded.
+ *
+ * @param restore whether to load registrations from [journalFile] instead of starting it over
+ */
+class NodeArtifactStore(
+    private val compressedFilesPath: File,
+    journalFile: File,
+    restore: Boolean
+) : ArtifactRegistry {
+    private val artifacts = ConcurrentHashMap<String, File>()
+    private val compressedArtifacts = ConcurrentHashMap<String, File>()
+    private val journalLock = Any()
+    @GuardedBy("journalLock") private val journal: FileOutputStream
+
+    init {
+        if (restore && journalFile.isFile) {
+            journalFile.forEachLine { line ->
+                val parts = line.split('\t', limit = 2)
+                if (parts.size == 2) {
+                    artifacts[parts[0]] = File(parts[1])
+                }
+            }
+        }
+        journal = FileOutputStream(journalFile, restore)
+    }
+
+    override fun register(file: File): String {
+        val artifactId = UUID.randomUUID().toString()
+        synchronized(journalLock) {
+            journal.write("$artifactId\t${file.absolutePath}\n".encodeToByteArray())
+            journal.channel.force(false)
+        }
+        artifacts[artifactId] = file
+        return artifactId
+    }
+
+    /**
+     * Forgets all registered files, e.g. when the central node has finished its run
+     */
+    fun clear() {
+        synchronized(journalLock) {
+            journal.channel.truncate(0)
+        }
+        artifacts.clear()
+        compressedArtifacts.values.forEach { it.delete() }
+        compressedArtifacts.clear()
+    }
+
+    val handler: HttpHandler = handler@{ request ->
+        val artifactId = request.path("id")
+        val file = artifactId?.let { artifacts[it] }
+        if (artifactId == null || file == null || !file.isFile) {
+            return@handler Response(Status.NOT_FOUND)
+        }
+
+        val acceptsGzip = request.header("Accept-Encoding")
+            ?.split(",")
+            ?.any { it.trim().startsWith("gzip") }
+            ?: false
+        if (acceptsGzip && isCompressible(file)) {
+            val compressedFile = compressedArtifacts.computeIfAbsent(artifactId) { compress(it, file) }
+            Response(Status.OK)
+                .header("Content-Encoding", "gzip")
+                .body(compressedFile.inputStream(), compressedFile.length())
+        } else {
+            Response(Status.OK)
+                .body(file.inputStream(), file.length())
+        }
+    }
+
+    private fun compress(artifactId: String, file: File): File {
+        compressedFilesPath.mkdirs()
+        val compressedFile = File(compressedFilesPath, "$artifactId.gz")
+        file.inputStream().use { input ->
+            GZIPOutputStream(compressedFile.outputStream()).use { output ->
+                input.copyTo(output)
+            }
+        }
+        return compressedFile
+    }
+
+    companion object {
+        // These formats are already compressed
+        private val incompressibleExtensions = setOf("png", "gif", "mp4", "jpg", "webm")
+
+        private fun isCompressible(file: File): Boolean = file.extension.lowercase() !in incompressibleExtensions
+    }
+}
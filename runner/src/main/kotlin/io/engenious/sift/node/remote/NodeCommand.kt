@@ -1,17 +1,26 @@
 package io.engenious.sift.node.remote
 
 import io.engenious.sift.Sift
+import io.engenious.sift.node.central.plugin.RemoteNodeClient.NoArguments
 import io.engenious.sift.node.central.plugin.RemoteNodeDevicePlugin.Companion.siftRemotePort
 import kotlinx.coroutines.ExperimentalCoroutinesApi
+import org.http4k.core.Method
 import org.http4k.format.KotlinxSerialization
 import org.http4k.jsonrpc.ErrorHandler
 import org.http4k.jsonrpc.ErrorMessage
 import org.http4k.jsonrpc.JsonRpc
+import org.http4k.routing.bind
+import org.http4k.routing.routes
 import org.http4k.server.asServer
 import java.util.concurrent.CountDownLatch
 import kotlin.system.exitProcess
 
 object NodeCommand : Sift() {
+    /**
+     * Server-sent event stream of finished test tasks, see [ResultEventFeed]
+     */
+    const val resultEventsPath = "/events"
+
     @ExperimentalCoroutinesApi
     override fun run() {
         val exitCode = try {
@@ -20,13 +29,32 @@ object NodeCommand : Sift() {
                 val shutdownSignaller = CountDownLatch(1)
                 val node = Node(config, shutdownSignaller)
 
-                JsonRpc.auto(KotlinxSerialization, NodeErrorHandler) {
-                    method("init", handler(node::init))
-                    method("runTest", handler(node::runTest))
-                    method("takeRunResult", handler(node::takeRunResult))
-                    method("shutdown", handler(node::shutdown))
-                }
-                    .asServer(LoopbackV4KtorCIO(siftRemotePort))
+                routes(
+                    "/rpc" bind JsonRpc.auto(KotlinxSerialization, NodeErrorHandler) {
+                        method("init", handler(node::init))
+                        method("runTest", handler(node::runTest))
+                        method("takeRunResult", handler(node::takeRunResult))
+                        method("cancelTest", handler(node::cancelTest))
+                        method("ackResults", handler(node::ackResults))
+                        method("status", handler(node::status))
+                        method("detach", handler(node::detach))
+                        method("shutdown", handler(node::shutdown))
+                    },
+                    "/binary/{method}" bind Method.POST to BinaryRpc(NodeErrorHandler) {
+                        method("runTest", Node.RunTest.serializer(), Node.TestRunRequestResult.serializer(), node::runTest)
+                        method(
+                            "takeRunResult",
+                            Node.TakeRunResult.serializer(),
+                            Node.TakeRunResultResult.serializer(),
+                            node::takeRunResult
+                        )
+                        method("cancelTest", Node.CancelTest.serializer(), Node.CancelTestResult.serializer(), node::cancelTest)
+                        method("ackResults", Node.AckResults.serializer(), Node.AckResultsResult.serializer(), node::ackResults)
+                        method("status", NoArguments.serializer(), Node.NodeStatus.serializer()) { node.status() }
+                    },
+                    "/artifacts/{id}" bind Method.GET to node.artifactStore.handler
+                )
+                    .asServer(LoopbackV4KtorCIO(siftRemotePort, mapOf(resultEventsPath to node.resultEvents)))
                     .start()
                     .use {
                         shutdownSignaller.await()
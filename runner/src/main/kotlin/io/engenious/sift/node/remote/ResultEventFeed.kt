@@ -0,0 +1,86 @@
+package io.engenious.sift.node.remote
+
+import com.android.annotations.concurrency.GuardedBy
+import java.io.Writer
+
+/**
+ * Ordered log of finished test tasks, followed by the central node as a server-sent event stream.
+ * Event ids are indexes in the log, so a reconnected client continues from its Last-Event-ID.
+ */
+class ResultEventFeed : LoopbackV4KtorCIO.EventStream {
+    private val lock = Object()
+    @GuardedBy("lock") private val finishedTaskIds = ArrayList<String>()
+    @GuardedBy("lock") private var isClosed = false
+
+    companion object {
+        /**
+         * Comments are sent at this interval when nothing happens, so that the client can detect a stale connection
+         */
+        const val keepAliveMillis = 10_000L
+    }
+
+    fun publish(taskId: String) {
+        synchronized(lock) {
+            finishedTaskIds.add(taskId)
+            lock.notifyAll()
+        }
+    }
+
+    /**
+     * Releases all followers
+     */
+    fun close() {
+        synchronized(lock) {
+            isClosed = true
+            lock.notifyAll()
+        }
+    }
+
+    /**
+     * Without [lastEventId] only tasks finished after the call are written
+     */
+    override fun write(lastEventId: String?, writer: Writer) {
+        var nextIndex = synchronized(lock) {
+            val size = finishedTaskIds.size
+
+            // An unknown id comes from a client of another node process, e.g. one that was restarted
+            lastEventId?.toIntOrNull()
+                ?.plus(1)
+                ?.takeIf { it <= size }
+                ?: size
+        }
+        while (true) {
+            val events = awaitFrom(nextIndex) ?: return
+            if (events.isEmpty()) {
+                writer.write(":\n\n")
+            } else {
+                events.forEachIndexed { offset, taskId ->
+                    writer.write("id: ${nextIndex + offset}\ndata: $taskId\n\n")
+                }
+                nextIndex += events.size
+            }
+
+            // Throws once the client has disconnected
+            writer.flush()
+        }
+    }
+
+    /**
+     * @return null when the feed is closed
+     */
+    private fun awaitFrom(index: Int): List<String>? = synchronized(lock) {
+        val deadline = System.currentTimeMillis() + keepAliveMillis
+        while (!isClosed && finishedTaskIds.size <= index) {
+            val waitMillis = deadline - System.currentTimeMillis()
+            if (waitMillis <= 0) {
+                break
+            }
+            lock.wait(waitMillis)
+        }
+        when {
+            isClosed -> null
+            finishedTaskIds.size <= index -> emptyList()
+            else -> ArrayList(finishedTaskIds.subList(index, finishedTaskIds.size))
+        }
+    }
+}
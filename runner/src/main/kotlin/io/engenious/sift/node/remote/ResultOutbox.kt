@@ -0,0 +1,128 @@
+package io.engenious.sift.node.remote
+
+import com.android.annotations.concurrency.GuardedBy
+import io.engenious.sift.node.serialization.RemoteTestCaseRunResult
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.json.Json
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.FileOutputStream
+import java.io.RandomAccessFile
+
+/**
+ * Append-only journal of results that the central node has not acknowledged yet.
+ * Results are kept on disk, so they are delivered even after a dropped connection or a restart of the node.
+ */
+class ResultOutbox(directory: File) {
+    private val journalFile = File(directory, "results.log")
+    private val lock = Any()
+    @GuardedBy("lock") private val pending = LinkedHashMap<String, RemoteTestCaseRunResult>()
+    @GuardedBy("lock") private val journal: FileOutputStream
+
+    /**
+     * Without [result] the record acknowledges the task
+     */
+    @Serializable
+    private class Record(
+        val taskId: String,
+        val result: RemoteTestCaseRunResult? = null
+    )
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(ResultOutbox::class.java)
+        private val json = Json { ignoreUnknownKeys = true }
+    }
+
+    init {
+        directory.mkdirs()
+        synchronized(lock) {
+            if (journalFile.isFile) {
+                replay()
+            }
+            journal = FileOutputStream(journalFile, true)
+            if (pending.isEmpty()) {
+                journal.channel.truncate(0)
+            } else if (!endsWithNewLine()) {
+                // Terminate a damaged last record, otherwise the next record would be appended to it and lost
+                journal.write('\n'.code)
+            }
+        }
+        if (pending.isNotEmpty()) {
+            logger.info("Restored ${pending.size} unacknowledged results from the outbox")
+        }
+    }
+
+    val isEmpty: Boolean
+        get() = synchronized(lock) { pending.isEmpty() }
+
+    fun put(taskId: String, result: RemoteTestCaseRunResult) {
+        synchronized(lock) {
+            append(Record(taskId, result))
+            pending[taskId] = result
+        }
+    }
+
+    fun get(taskId: String): RemoteTestCaseRunResult? = synchronized(lock) { pending[taskId] }
+
+    /**
+     * @return number of results that are still not acknowledged
+     */
+    fun acknowledge(taskIds: Collection<String>): Int = synchronized(lock) {
+        taskIds
+            .filter { pending.remove(it) != null }
+            .forEach { append(Record(it)) }
+
+        // Everything is delivered, so the journal can start over
+        if (pending.isEmpty()) {
+            journal.channel.truncate(0)
+        }
+        pending.size
+    }
+
+    /**
+     * Drops all results, e.g. when the central node has finished its run
+     */
+    fun clear() {
+        synchronized(lock) {
+            pending.clear()
+            journal.channel.truncate(0)
+        }
+    }
+
+    @GuardedBy("lock")
+    private fun append(record: Record) {
+        val line = json.encodeToString(Record.serializer(), record) + "\n"
+        journal.write(line.encodeToByteArray())
+        journal.channel.force(false)
+    }
+
+    @GuardedBy("lock")
+    private fun endsWithNewLine(): Boolean {
+        return RandomAccessFile(journalFile, "r").use {
+            it.length() == 0L || it.run { seek(length() - 1); read() } == '\n'.code
+        }
+    }
+
+    @GuardedBy("lock")
+    private fun replay() {
+        journalFile.useLines { lines ->
+            lines
+                .filter { it.isNotBlank() }
+                .forEach { line ->
+                    val record = try {
+                        json.decodeFromString(Record.serializer(), line)
+                    } catch (e: SerializationException) {
+                        // The last record is incomplete when the node was killed while writing it
+                        logger.warn("Skipping a damaged outbox record")
+                        return@forEach
+                    }
+                    if (record.result != null) {
+                        pending[record.taskId] = record.result
+                    } else {
+                        pending.remove(record.taskId)
+                    }
+                }
+        }
+    }
+}
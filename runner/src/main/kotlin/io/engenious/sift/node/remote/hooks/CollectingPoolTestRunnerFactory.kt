@@ -3,6 +3,7 @@ package io.engenious.sift.node.remote.hooks
 import com.github.tarcv.tongs.TongsRunner
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.injector.RuleManagerFactory
+import com.github.tarcv.tongs.model.InsertionOrdering
 import com.github.tarcv.tongs.model.TestCaseEventQueue
 import com.github.tarcv.tongs.runner.DeviceTestRunnerFactory
 import com.github.tarcv.tongs.runner.PoolTestRunner
@@ -15,7 +16,12 @@ class CollectingPoolTestRunnerFactory(
     deviceTestRunnerFactory: DeviceTestRunnerFactory,
     ruleManagerFactory: RuleManagerFactory,
     private val testQueueConsumer: (TestCaseEventQueue) -> Unit
-) : PoolTestRunnerFactory(deviceTestRunnerFactory, ruleManagerFactory) {
+) : PoolTestRunnerFactory(
+    deviceTestRunnerFactory,
+    ruleManagerFactory,
+    // test cases are offered one by one by the central node, which also decides their order
+    InsertionOrdering
+) {
     override fun createPoolTestRunner(
         poolTask: TongsRunner.PoolTask,
         testCaseResults: MutableList<TestCaseRunResult>,
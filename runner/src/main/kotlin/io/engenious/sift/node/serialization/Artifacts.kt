@@ -0,0 +1,20 @@
+package io.engenious.sift.node.serialization
+
+import java.io.File
+
+/**
+ * Keeps result files on a node, so that results carry only references to them
+ */
+interface ArtifactRegistry {
+    /**
+     * @return a reference that can be passed to [ArtifactDownloader.download] on the central node
+     */
+    fun register(file: File): String
+}
+
+/**
+ * Fetches files referenced in results from a node
+ */
+interface ArtifactDownloader {
+    fun download(artifactId: String, target: File)
+}
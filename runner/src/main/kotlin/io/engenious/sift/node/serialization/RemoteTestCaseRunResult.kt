@@ -6,6 +6,7 @@
 
 package io.engenious.sift.node.serialization
 
+import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.devices.Pool
 import com.github.tarcv.tongs.api.result.SimpleMonoTextReportData
 import com.github.tarcv.tongs.api.result.StackTrace
@@ -13,20 +14,20 @@ import com.github.tarcv.tongs.api.result.StandardFileTypes
 import com.github.tarcv.tongs.api.result.Table
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.testcases.TestCase
 import com.github.tarcv.tongs.system.io.TestCaseFileManagerImpl
-import io.engenious.sift.node.serialization.RemoteDevice.Companion.toLocalDevice
-import io.engenious.sift.node.serialization.RemoteTestCase.Companion.toTestCase
 import kotlinx.serialization.SerialName
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.UseSerializers
 import org.koin.core.context.KoinContextHandler
 import java.time.Instant
 
+/**
+ * Result of a test case task. It doesn't include the device and the test case, as the central node knows them
+ * from the task.
+ */
 @Serializable
 data class RemoteTestCaseRunResult(
-    val device: RemoteDevice,
-    val testCase: RemoteTestCase,
-
     val status: ResultStatus,
     val stackTraces: List<StackTrace>,
     val startTimestampUtc: Instant,
@@ -39,9 +40,10 @@ data class RemoteTestCaseRunResult(
     val data: List<RemoteTestReportData>
 ) {
     companion object {
-        fun fromTestCaseRunResult(value: TestCaseRunResult) = RemoteTestCaseRunResult(
-            RemoteDevice.fromLocalDevice(value.device),
-            RemoteTestCase.fromTestCase(value.testCase),
+        fun fromTestCaseRunResult(
+            value: TestCaseRunResult,
+            artifactRegistry: ArtifactRegistry
+        ) = RemoteTestCaseRunResult(
             value.status,
             value.stackTraces,
             value.startTimestampUtc,
@@ -50,25 +52,30 @@ data class RemoteTestCaseRunResult(
             value.netEndTimestampUtc,
             value.totalFailureCount,
             value.additionalProperties,
-            value.coverageReport?.let { TestCaseFileSerializer.toSurrogate(it) },
+            value.coverageReport?.let { TestCaseFileSerializer.toSurrogate(it, artifactRegistry) },
             value.data.map {
-                TestReportDataSerializer.toSurrogate(it)
+                TestReportDataSerializer.toSurrogate(it, artifactRegistry)
             }
         )
 
-        fun RemoteTestCaseRunResult.toTestCaseRunResult(pool: Pool): TestCaseRunResult {
+        fun RemoteTestCaseRunResult.toTestCaseRunResult(
+            pool: Pool,
+            device: Device,
+            testCase: TestCase,
+            artifactDownloader: ArtifactDownloader
+        ): TestCaseRunResult {
             val testFileManager = TestCaseFileManagerImpl(
                 KoinContextHandler.get().get(),
                 pool,
                 device,
-                testCase.toTestCase()
+                testCase
             )
-            val testCaseFileSerializer = TestCaseFileSerializer(testFileManager)
+            val testCaseFileSerializer = TestCaseFileSerializer(testFileManager, artifactDownloader)
 
             val candidate = TestCaseRunResult(
                 pool,
-                device.toLocalDevice(),
-                testCase.toTestCase(),
+                device,
+                testCase,
                 status,
                 stackTraces,
                 startTimestampUtc,
@@ -140,9 +147,12 @@ sealed class RemoteTestReportData {
     ) : RemoteTestReportData()
 }
 
+/**
+ * @property artifactId reference to the file contents on the node, null when the file doesn't exist
+ */
 @Serializable
 data class RemoteTestCaseFile(
     val fileType: StandardFileTypes,
     val suffix: String,
-    val data64: String?
+    val artifactId: String?
 )
@@ -3,15 +3,16 @@ package io.engenious.sift.node.serialization
 import com.github.tarcv.tongs.api.result.StandardFileTypes
 import com.github.tarcv.tongs.api.result.TestCaseFile
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
-import java.util.Base64
 
-class TestCaseFileSerializer(private val testFileManager: TestCaseFileManager) {
+class TestCaseFileSerializer(
+    private val testFileManager: TestCaseFileManager,
+    private val artifactDownloader: ArtifactDownloader
+) {
     companion object {
-        fun toSurrogate(value: TestCaseFile): RemoteTestCaseFile {
-            val fileBytes = value.toFile().run {
+        fun toSurrogate(value: TestCaseFile, artifactRegistry: ArtifactRegistry): RemoteTestCaseFile {
+            val artifactId = value.toFile().run {
                 if (isFile) {
-                    val bytes = readBytes()
-                    Base64.getMimeEncoder().encodeToString(bytes)
+                    artifactRegistry.register(this)
                 } else {
                     null
                 }
@@ -20,7 +21,7 @@ class TestCaseFileSerializer(private val testFileManager: TestCaseFileManager) {
             return RemoteTestCaseFile(
                 value.fileType as StandardFileTypes,
                 value.suffix,
-                fileBytes
+                artifactId
             )
         }
     }
@@ -31,11 +32,8 @@ class TestCaseFileSerializer(private val testFileManager: TestCaseFileManager) {
             surrogate.fileType,
             surrogate.suffix
         )
-        if (surrogate.data64 != null) {
-            val bytes = Base64.getMimeDecoder().decode(surrogate.data64)
-            testCaseFile
-                .create()
-                .writeBytes(bytes)
+        if (surrogate.artifactId != null) {
+            artifactDownloader.download(surrogate.artifactId, testCaseFile.create())
         }
         return testCaseFile
     }
@@ -11,7 +11,6 @@ import com.github.tarcv.tongs.api.result.SimpleHtmlReportData
 import com.github.tarcv.tongs.api.result.SimpleMonoTextReportData
 import com.github.tarcv.tongs.api.result.SimpleTableReportData
 import com.github.tarcv.tongs.api.result.Table
-import com.github.tarcv.tongs.api.result.TableReportData
 import com.github.tarcv.tongs.api.result.TestCaseFile
 import com.github.tarcv.tongs.api.result.TestReportData
 import com.github.tarcv.tongs.api.result.VideoReportData
@@ -21,49 +20,53 @@ import kotlin.reflect.full.declaredMemberProperties
 import kotlin.reflect.jvm.isAccessible
 
 object TestReportDataSerializer {
-    fun toSurrogate(value: TestReportData): RemoteTestReportData = when (value) {
+    fun toSurrogate(value: TestReportData, artifactRegistry: ArtifactRegistry): RemoteTestReportData = when (value) {
         is SimpleMonoTextReportData, is FileMonoTextReportData -> RemoteTestReportData.WritableTestReportData.SurrogateMonoTextReportData(
             (value as MonoTextReportData).title,
             value.monoText,
             value.type,
             value
                 .takeIf { value is FileMonoTextReportData }
-                ?.extractFile("monoTextPath")
+                ?.extractFile("monoTextPath", artifactRegistry)
         )
         is SimpleHtmlReportData, is FileHtmlReportData -> RemoteTestReportData.WritableTestReportData.SurrogateHtmlReportData(
             (value as HtmlReportData).title,
             value.html,
             value
                 .takeIf { value is FileHtmlReportData }
-                ?.extractFile("htmlPath")
+                ?.extractFile("htmlPath", artifactRegistry)
         )
-        is SimpleTableReportData, is FileTableReportData -> RemoteTestReportData.WritableTestReportData.SurrogateTableReportData(
-            (value as TableReportData).title,
+        is SimpleTableReportData -> RemoteTestReportData.WritableTestReportData.SurrogateTableReportData(
+            value.title,
             Table.TableJson(
                 value.table.headers.map { it.title },
                 value.table.rows.map { row ->
                     row.cells.map { it.text }
                 }
             ),
-            value
-                .takeIf { value is FileTableReportData }
-                ?.extractFile("tablePath")
+            null
+        )
+        is FileTableReportData -> RemoteTestReportData.WritableTestReportData.SurrogateTableReportData(
+            value.title,
+            // The central node reads the table from the transferred file only when a report needs it
+            Table.TableJson(),
+            value.extractFile("tablePath", artifactRegistry)
         )
         is ImageReportData -> RemoteTestReportData.SurrogateImageReportData(
             value.title,
-            value.extractFile("image")
+            value.extractFile("image", artifactRegistry)
         )
         is VideoReportData -> RemoteTestReportData.SurrogateVideoReportData(
             value.title,
-            value.extractFile("video")
+            value.extractFile("video", artifactRegistry)
         )
         is LinkedFileReportData -> RemoteTestReportData.SurrogateLinkedFileReportData(
             value.title,
-            TestCaseFileSerializer.toSurrogate(value.file)
+            TestCaseFileSerializer.toSurrogate(value.file, artifactRegistry)
         )
     }
 
-    private fun TestReportData.extractFile(fieldName: String): RemoteTestCaseFile {
+    private fun TestReportData.extractFile(fieldName: String, artifactRegistry: ArtifactRegistry): RemoteTestCaseFile {
         return this::class.declaredMemberProperties
             .single { it.name == fieldName }
             .run {
@@ -74,7 +77,7 @@ object TestReportDataSerializer {
                 get(this@extractFile)
             }
             .let {
-                TestCaseFileSerializer.toSurrogate(it)
+                TestCaseFileSerializer.toSurrogate(it, artifactRegistry)
             }
     }
 
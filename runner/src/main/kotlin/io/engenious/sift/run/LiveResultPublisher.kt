@@ -0,0 +1,78 @@
+package io.engenious.sift.run
+
+import com.android.annotations.concurrency.GuardedBy
+import io.engenious.sift.FilledTestResult
+import io.engenious.sift.TestIdentifier
+import org.slf4j.LoggerFactory
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Periodically publishes results collected since the previous publication, so that they are visible
+ * while the run is still going. A result is published again when a retry replaces it.
+ */
+class LiveResultPublisher(
+    private val intervalMillis: Long = 30_000L,
+    private val publish: (ResultData) -> Unit
+) {
+    private val lock = Any()
+    @GuardedBy("lock") private val published = HashMap<TestIdentifier, FilledTestResult>()
+    @GuardedBy("lock") private var resultData: ResultData? = null
+    @GuardedBy("lock") private var isStarted = false
+
+    private val executor = Executors.newSingleThreadScheduledExecutor {
+        Thread(it, "LiveResults").apply { isDaemon = true }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(LiveResultPublisher::class.java)
+    }
+
+    /**
+     * Starts publishing results from [resultData]. Later calls only switch to their [resultData].
+     */
+    fun start(resultData: ResultData) {
+        synchronized(lock) {
+            this.resultData = resultData
+            if (isStarted) {
+                return
+            }
+            isStarted = true
+        }
+        executor.scheduleWithFixedDelay(
+            {
+                try {
+                    publishPending()
+                } catch (e: Exception) {
+                    logger.warn("Failed to publish intermediate results, will retry", e)
+                }
+            },
+            intervalMillis,
+            intervalMillis,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    /**
+     * Stops periodic publication and publishes results that were not published yet
+     */
+    fun finish() {
+        executor.shutdownNow()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+        publishPending()
+    }
+
+    private fun publishPending() {
+        synchronized(lock) {
+            val resultData = resultData ?: return
+            val pending = resultData.results
+                .filter { (identifier, result) -> published[identifier] !== result }
+            if (pending.isEmpty()) {
+                return
+            }
+
+            publish(ResultData(resultData.runId, pending.toMutableMap()))
+            published.putAll(pending)
+        }
+    }
+}
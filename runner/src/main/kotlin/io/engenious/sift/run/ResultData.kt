@@ -2,8 +2,10 @@ package io.engenious.sift.run
 
 import io.engenious.sift.FilledTestResult
 import io.engenious.sift.TestIdentifier
+import java.util.concurrent.ConcurrentHashMap
 
 data class ResultData(
     val runId: Int,
-    val results: MutableMap<TestIdentifier, FilledTestResult> = mutableMapOf()
+    // Devices add results concurrently, and they can be published while the run is still going
+    val results: MutableMap<TestIdentifier, FilledTestResult> = ConcurrentHashMap()
 )
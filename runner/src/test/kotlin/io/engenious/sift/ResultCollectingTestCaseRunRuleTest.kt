@@ -0,0 +1,216 @@
+package io.engenious.sift
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.IShellOutputReceiver
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.result.FileType
+import com.github.tarcv.tongs.api.result.TestCaseFileManager
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.run.RunConfiguration
+import com.github.tarcv.tongs.api.run.TestCaseEvent
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
+import com.github.tarcv.tongs.api.run.aTestResult
+import com.github.tarcv.tongs.api.run.anErrorTrace
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import com.github.tarcv.tongs.model.AndroidDevice
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+
+class ResultCollectingTestCaseRunRuleTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val deviceFiles = FakeDeviceFiles()
+    private val device = AndroidDevice.Builder.aDevice()
+        .withSerial("fake-device")
+        .withDeviceInterface(deviceFiles.createDevice())
+        .build()
+    private val testCase = aTestCase("ExampleTest", "failingTest")
+    private val testIdentifier = TestIdentifier.fromTestCase(testCase)
+    private val testResults = ConcurrentHashMap<TestIdentifier, FilledTestResult>()
+    private val screenshotPath = "$mountPoint/failure-com.example.ExampleTest-failingTest.png"
+
+    @Test
+    fun `screenshot of a failed test case is collected`() {
+        val rule = createRule()
+
+        rule.before()
+        deviceFiles.put(screenshotPath, "screenshot")
+        rule.after(TestCaseRunRuleAfterArguments(aTestResult(testCase, ResultStatus.FAIL, anErrorTrace())))
+        device.artifacts.awaitIdle()
+
+        val screenshot = testResults.getValue(testIdentifier).result.screenshot
+        Assert.assertNotNull(screenshot)
+        Assert.assertEquals("screenshot", screenshot!!.readText())
+        Assert.assertTrue("Pulled screenshot should be removed from the device", deviceFiles.isEmpty())
+    }
+
+    @Test
+    fun `screenshot left by a previous test case is removed`() {
+        deviceFiles.put(screenshotPath, "stale screenshot")
+        val rule = createRule()
+
+        rule.before()
+        rule.after(TestCaseRunRuleAfterArguments(aTestResult(testCase, ResultStatus.FAIL, anErrorTrace())))
+        device.artifacts.awaitIdle()
+
+        Assert.assertNull(testResults.getValue(testIdentifier).result.screenshot)
+    }
+
+    @Test
+    fun `screenshots of test cases from one bucket are not mixed up`() {
+        val otherTestCase = aTestCase("ExampleTest", "otherFailingTest")
+        val rules = listOf(createRule(testCase), createRule(otherTestCase))
+
+        // Rules of all test cases in a bucket are executed before and after the whole bucket
+        rules.forEach { it.before() }
+        deviceFiles.put(screenshotPath, "screenshot")
+        deviceFiles.put("$mountPoint/failure-com.example.ExampleTest-otherFailingTest.png", "other screenshot")
+        rules.zip(listOf(testCase, otherTestCase)).forEach { (rule, ruleTestCase) ->
+            rule.after(TestCaseRunRuleAfterArguments(aTestResult(ruleTestCase, ResultStatus.FAIL, anErrorTrace())))
+        }
+        device.artifacts.awaitIdle()
+
+        Assert.assertEquals("screenshot", testResults.getValue(testIdentifier).result.screenshot?.readText())
+        Assert.assertEquals(
+            "other screenshot",
+            testResults.getValue(TestIdentifier.fromTestCase(otherTestCase)).result.screenshot?.readText()
+        )
+    }
+
+    @Test
+    fun `screenshot file name is safe for shell commands`() {
+        Assert.assertEquals(
+            "failure-com.example.ExampleTest_Nested-test_0_.png",
+            ResultCollectingTestCaseRunRule.screenshotFileName(aTestCase("ExampleTest\$Nested", "test[0]"))
+        )
+    }
+
+    private fun createRule(ruleTestCase: TestCase = testCase): ResultCollectingTestCaseRunRule {
+        val context = TestCaseRunRuleContext(
+            unusedConfiguration(),
+            TemporaryFileManager(temporaryFolder.root),
+            Pool.Builder.aDevicePool().addDevice(device).build(),
+            device,
+            TestCaseEvent(ruleTestCase, emptyList()),
+            Instant.now()
+        )
+        val identifierToId = mapOf(TestIdentifier.fromTestCase(ruleTestCase) to 1)
+        return ResultCollectingTestCaseRunRule(identifierToId, testResults, context)
+    }
+
+    private fun unusedConfiguration(): RunConfiguration {
+        return Proxy.newProxyInstance(
+            javaClass.classLoader,
+            arrayOf(RunConfiguration::class.java)
+        ) { _, method, _ ->
+            throw UnsupportedOperationException("Configuration is not used by the rule: ${method.name}")
+        } as RunConfiguration
+    }
+
+    /**
+     * Emulates files on a device and shell commands that the rule executes
+     * with [com.github.tarcv.tongs.system.adb.DeviceCommandBatch]
+     */
+    private class FakeDeviceFiles : InvocationHandler {
+        private val files = ConcurrentHashMap<String, String>()
+
+        fun createDevice(): IDevice {
+            return Proxy.newProxyInstance(javaClass.classLoader, arrayOf(IDevice::class.java), this) as IDevice
+        }
+
+        fun put(path: String, content: String) {
+            files[path] = content
+        }
+
+        fun isEmpty(): Boolean = files.isEmpty()
+
+        override fun invoke(proxy: Any, method: Method, args: Array<out Any?>?): Any? {
+            return when (method.name) {
+                "getMountPoint" -> mountPoint
+                "getSerialNumber" -> "fake-device"
+                "supportsFeature" -> false
+                "executeShellCommand" -> {
+                    executeScript(args!![0] as String, args[1] as IShellOutputReceiver)
+                    null
+                }
+                "pullFile" -> {
+                    val content = files[args!![0] as String] ?: throw IOException("No such file: ${args[0]}")
+                    File(args[1] as String).writeText(content)
+                    null
+                }
+                "hashCode" -> System.identityHashCode(proxy)
+                "equals" -> proxy === args!![0]
+                "toString" -> "FakeDevice"
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        }
+
+        private fun executeScript(script: String, receiver: IShellOutputReceiver) {
+            val steps = stepPattern.findAll(script).toList()
+            val output = if (steps.isEmpty()) {
+                execute(script)
+                ""
+            } else {
+                steps.joinToString("") { step ->
+                    val (command, index) = step.destructured
+                    "tongs-step-status:$index:${execute(command)}\n"
+                }
+            }
+            val bytes = output.toByteArray()
+            receiver.addOutput(bytes, 0, bytes.size)
+            receiver.flush()
+        }
+
+        private fun execute(command: String): Int {
+            val arguments = command.trim().split(' ')
+            return when {
+                arguments[0] == "rm" -> {
+                    files.remove(arguments.last())
+                    0
+                }
+                arguments[0] == "mv" -> {
+                    val content = files.remove(arguments[1]) ?: return 1
+                    files[arguments[2]] = content
+                    0
+                }
+                else -> throw UnsupportedOperationException(command)
+            }
+        }
+
+        companion object {
+            private val stepPattern = Regex("""\s*(.+?); echo "tongs-step-status:(\d+):\$\?";""")
+        }
+    }
+
+    private class TemporaryFileManager(private val root: File) : TestCaseFileManager {
+        override fun createFile(fileType: FileType): File = createFile(fileType, "")
+        override fun createFile(fileType: FileType, sequenceNumber: Int): File =
+            createFile(fileType, sequenceNumber.toString())
+
+        override fun createFile(fileType: FileType, suffix: String): File {
+            return getFile(fileType, suffix).apply {
+                parentFile.mkdirs()
+                createNewFile()
+            }
+        }
+
+        override fun getFile(fileType: FileType, suffix: String): File = File(root, getRelativeFile(fileType, suffix).path)
+        override fun getRelativeFile(fileType: FileType, suffix: String): File = File("${fileType.directory}-$suffix")
+    }
+
+    companion object {
+        private const val mountPoint = "/sdcard"
+    }
+}
@@ -0,0 +1,65 @@
+package io.engenious.sift.node.central.plugin
+
+import io.engenious.sift.node.central.plugin.HeartbeatMonitor.Action
+import org.junit.Assert
+import org.junit.Test
+
+class HeartbeatMonitorTest {
+    @Test
+    fun `node without reconnect is dead after missing heartbeats in a row`() {
+        val monitor = HeartbeatMonitor(3, 0)
+
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.GIVE_UP, monitor.onMissed())
+    }
+
+    @Test
+    fun `responding node resets missed heartbeats`() {
+        val monitor = HeartbeatMonitor(3, 0)
+
+        monitor.onMissed()
+        monitor.onMissed()
+        monitor.onResponded()
+
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.GIVE_UP, monitor.onMissed())
+    }
+
+    @Test
+    fun `failed reconnects are retried before giving up`() {
+        val monitor = HeartbeatMonitor(2, 2)
+
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.RECONNECT, monitor.onMissed())
+        Assert.assertEquals(Action.RECONNECT, monitor.onMissed())
+        Assert.assertEquals(Action.GIVE_UP, monitor.onMissed())
+    }
+
+    @Test
+    fun `node is dead when it doesn't respond after a successful reconnect`() {
+        val monitor = HeartbeatMonitor(3, 3)
+
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.WAIT, monitor.onMissed())
+        Assert.assertEquals(Action.RECONNECT, monitor.onMissed())
+        monitor.onReconnected()
+
+        Assert.assertEquals(Action.GIVE_UP, monitor.onMissed())
+    }
+
+    @Test
+    fun `reconnect attempts are reset only by a heartbeat after the reconnect`() {
+        val monitor = HeartbeatMonitor(1, 2)
+
+        Assert.assertEquals(Action.RECONNECT, monitor.onMissed())
+        monitor.onReconnected()
+        monitor.onResponded()
+        Assert.assertEquals(0, monitor.reconnectAttempts)
+
+        Assert.assertEquals(Action.RECONNECT, monitor.onMissed())
+        Assert.assertEquals(Action.RECONNECT, monitor.onMissed())
+        Assert.assertEquals(Action.GIVE_UP, monitor.onMissed())
+    }
+}
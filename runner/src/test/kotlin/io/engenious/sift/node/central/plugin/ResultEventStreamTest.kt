@@ -0,0 +1,60 @@
+package io.engenious.sift.node.central.plugin
+
+import okhttp3.OkHttpClient
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert
+import org.junit.Test
+
+class ResultEventStreamTest {
+    private val stream = ResultEventStream("http://127.0.0.1:1/events", OkHttpClient())
+
+    @After
+    fun tearDown() {
+        stream.close()
+    }
+
+    @Test
+    fun `task ids are read from complete events`() {
+        stream.readEvents(Buffer().writeUtf8("id: 0\ndata: task1\n\nid: 1\ndata: task2\n\n"))
+
+        Assert.assertEquals(setOf("task1", "task2"), stream.awaitFinished(listOf("task1", "task2", "task3"), 0))
+    }
+
+    @Test
+    fun `keep alive comments are skipped`() {
+        stream.readEvents(Buffer().writeUtf8(":\n\nid: 0\ndata: task1\n\n:\n\n"))
+
+        Assert.assertEquals(setOf("task1"), stream.awaitFinished(listOf("task1"), 0))
+    }
+
+    @Test
+    fun `events with CRLF line endings are read`() {
+        stream.readEvents(Buffer().writeUtf8("id: 0\r\ndata: task1\r\n\r\n"))
+
+        Assert.assertEquals(setOf("task1"), stream.awaitFinished(listOf("task1"), 0))
+    }
+
+    @Test
+    fun `unterminated event is ignored`() {
+        stream.readEvents(Buffer().writeUtf8("id: 0\ndata: task1\n"))
+
+        Assert.assertEquals(emptySet<String>(), stream.awaitFinished(listOf("task1"), 0))
+    }
+
+    @Test
+    fun `finished tasks are returned once`() {
+        stream.readEvents(Buffer().writeUtf8("id: 0\ndata: task1\n\n"))
+
+        Assert.assertEquals(setOf("task1"), stream.awaitFinished(listOf("task1"), 0))
+        Assert.assertEquals(emptySet<String>(), stream.awaitFinished(listOf("task1"), 0))
+    }
+
+    @Test
+    fun `forgotten tasks are not returned`() {
+        stream.readEvents(Buffer().writeUtf8("id: 0\ndata: task1\n\n"))
+        stream.forget("task1")
+
+        Assert.assertEquals(emptySet<String>(), stream.awaitFinished(listOf("task1"), 0))
+    }
+}
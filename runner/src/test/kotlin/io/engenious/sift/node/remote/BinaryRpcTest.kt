@@ -0,0 +1,84 @@
+package io.engenious.sift.node.remote
+
+import kotlinx.serialization.Serializable
+import org.http4k.core.Method
+import org.http4k.core.Request
+import org.http4k.core.Status
+import org.http4k.jsonrpc.ErrorMessage
+import org.http4k.routing.bind
+import org.http4k.routing.routes
+import org.junit.Assert
+import org.junit.Test
+
+class BinaryRpcTest {
+    @Serializable
+    data class Division(val dividend: Int, val divisor: Int)
+
+    @Serializable
+    data class Quotient(val value: Int)
+
+    private val server = routes(
+        "/binary/{method}" bind Method.POST to BinaryRpc({ ErrorMessage(500, it.toString()) }) {
+            method("divide", Division.serializer(), Quotient.serializer()) {
+                Quotient(it.dividend / it.divisor)
+            }
+        }
+    )
+
+    @Test
+    fun `result is delivered`() {
+        Assert.assertEquals(Quotient(3), call("divide", Division(7, 2)))
+    }
+
+    @Test
+    fun `handler exception is delivered as an error`() {
+        val error = assertFails {
+            call("divide", Division(7, 0))
+        }
+        Assert.assertEquals(
+            BinaryRpc.Error(500, ArithmeticException("/ by zero").toString()).toString(),
+            error.message
+        )
+    }
+
+    @Test
+    fun `unknown method is delivered as an error`() {
+        val error = assertFails {
+            call("multiply", Division(7, 2))
+        }
+        Assert.assertEquals(
+            BinaryRpc.Error(ErrorMessage.MethodNotFound.code, ErrorMessage.MethodNotFound.message).toString(),
+            error.message
+        )
+    }
+
+    @Test
+    fun `malformed parameters are delivered as an error`() {
+        val response = server(Request(Method.POST, "/binary/divide").body("not CBOR"))
+
+        Assert.assertEquals(Status.OK, response.status)
+        val error = assertFails {
+            BinaryRpc.decodeReply(Quotient.serializer(), response.body.stream.use { it.readBytes() })
+        }
+        Assert.assertTrue(error.message!!.contains(ErrorMessage.InvalidParams.code.toString()))
+    }
+
+    private fun call(method: String, request: Division): Quotient {
+        val response = server(
+            Request(Method.POST, "/binary/$method")
+                .header("Content-Type", BinaryRpc.contentType)
+                .body(BinaryRpc.encode(Division.serializer(), request))
+        )
+        Assert.assertEquals(Status.OK, response.status)
+        return BinaryRpc.decodeReply(Quotient.serializer(), response.body.stream.use { it.readBytes() })
+    }
+
+    private fun assertFails(block: () -> Unit): RuntimeException {
+        try {
+            block()
+        } catch (e: RuntimeException) {
+            return e
+        }
+        throw AssertionError("The call should fail")
+    }
+}
@@ -0,0 +1,97 @@
+package io.engenious.sift.node.remote
+
+import io.engenious.sift.node.central.plugin.ResultEventStream
+import okhttp3.OkHttpClient
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import java.io.IOException
+import java.io.StringWriter
+import kotlin.concurrent.thread
+
+class ResultEventFeedTest {
+    private val feed = ResultEventFeed()
+
+    @Test
+    fun `events after the last event id are written`() {
+        feed.publish("task1")
+        feed.publish("task2")
+        feed.publish("task3")
+
+        val writer = DisconnectingWriter()
+        writeUntilDisconnected("0", writer)
+
+        Assert.assertEquals("id: 1\ndata: task2\n\nid: 2\ndata: task3\n\n", writer.toString())
+    }
+
+    @Test
+    fun `only new events are written without a known last event id`() {
+        feed.publish("task1")
+
+        val withoutId = DisconnectingWriter()
+        val withUnknownId = DisconnectingWriter()
+        val followers = listOf(
+            thread { writeUntilDisconnected(null, withoutId) },
+            thread { writeUntilDisconnected("42", withUnknownId) }
+        )
+        followers.forEach { awaitWaiting(it) }
+        feed.publish("task2")
+        followers.forEach { it.join(10_000) }
+
+        Assert.assertEquals("id: 1\ndata: task2\n\n", withoutId.toString())
+        Assert.assertEquals("id: 1\ndata: task2\n\n", withUnknownId.toString())
+    }
+
+    @Test
+    fun `closing the feed releases followers`() {
+        val writer = DisconnectingWriter()
+        val follower = thread { feed.write(null, writer) }
+        awaitWaiting(follower)
+
+        feed.close()
+        follower.join(10_000)
+
+        Assert.assertFalse(follower.isAlive)
+        Assert.assertEquals("", writer.toString())
+    }
+
+    @Test
+    fun `written events are read by the stream`() {
+        feed.publish("task1")
+        feed.publish("task2")
+        val writer = DisconnectingWriter()
+        writeUntilDisconnected("-1", writer)
+
+        ResultEventStream("http://127.0.0.1:1/events", OkHttpClient()).use { stream ->
+            stream.readEvents(Buffer().writeUtf8(writer.toString()))
+
+            Assert.assertEquals(setOf("task1", "task2"), stream.awaitFinished(listOf("task1", "task2"), 0))
+        }
+    }
+
+    private fun writeUntilDisconnected(lastEventId: String?, writer: DisconnectingWriter) {
+        try {
+            feed.write(lastEventId, writer)
+            Assert.fail("Writing should stop only when the client disconnects")
+        } catch (e: IOException) {
+            // Expected
+        }
+    }
+
+    private fun awaitWaiting(follower: Thread) {
+        val deadline = System.currentTimeMillis() + 10_000
+        while (follower.state != Thread.State.TIMED_WAITING) {
+            Assert.assertTrue("The follower should wait for new events", System.currentTimeMillis() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    /**
+     * Emulates a client that disconnects after receiving the first batch of events
+     */
+    private class DisconnectingWriter : StringWriter() {
+        override fun flush() {
+            throw IOException("Disconnected")
+        }
+    }
+}
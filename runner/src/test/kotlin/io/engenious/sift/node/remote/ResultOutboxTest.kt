@@ -0,0 +1,75 @@
+package io.engenious.sift.node.remote
+
+import com.github.tarcv.tongs.api.run.ResultStatus
+import io.engenious.sift.node.serialization.RemoteTestCaseRunResult
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.time.Instant
+
+class ResultOutboxTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val journalFile: File
+        get() = File(temporaryFolder.root, "results.log")
+
+    @Test
+    fun `unacknowledged results are restored`() {
+        ResultOutbox(temporaryFolder.root).apply {
+            put("task1", aResult(ResultStatus.PASS))
+            put("task2", aResult(ResultStatus.FAIL))
+            acknowledge(listOf("task1"))
+        }
+
+        val restored = ResultOutbox(temporaryFolder.root)
+        Assert.assertNull(restored.get("task1"))
+        Assert.assertEquals(ResultStatus.FAIL, restored.get("task2")?.status)
+    }
+
+    @Test
+    fun `torn last record is skipped on replay`() {
+        ResultOutbox(temporaryFolder.root).put("task1", aResult(ResultStatus.PASS))
+        val validJournal = journalFile.readText()
+        journalFile.appendText(validJournal.substring(0, validJournal.length / 2).replace("task1", "task2"))
+
+        val restored = ResultOutbox(temporaryFolder.root)
+        Assert.assertEquals(ResultStatus.PASS, restored.get("task1")?.status)
+        Assert.assertNull(restored.get("task2"))
+
+        // A record written after the torn one must not be merged into it
+        restored.put("task3", aResult(ResultStatus.FAIL))
+        val restoredAgain = ResultOutbox(temporaryFolder.root)
+        Assert.assertEquals(ResultStatus.PASS, restoredAgain.get("task1")?.status)
+        Assert.assertEquals(ResultStatus.FAIL, restoredAgain.get("task3")?.status)
+    }
+
+    @Test
+    fun `journal is truncated once everything is acknowledged`() {
+        val outbox = ResultOutbox(temporaryFolder.root)
+        outbox.put("task1", aResult(ResultStatus.PASS))
+        outbox.put("task2", aResult(ResultStatus.PASS))
+
+        Assert.assertEquals(1, outbox.acknowledge(listOf("task1")))
+        Assert.assertTrue(journalFile.length() > 0)
+
+        Assert.assertEquals(0, outbox.acknowledge(listOf("task2", "unknownTask")))
+        Assert.assertTrue(outbox.isEmpty)
+        Assert.assertEquals(0, journalFile.length())
+
+        Assert.assertTrue(ResultOutbox(temporaryFolder.root).isEmpty)
+    }
+
+    private fun aResult(status: ResultStatus) = RemoteTestCaseRunResult(
+        status = status,
+        stackTraces = emptyList(),
+        startTimestampUtc = Instant.ofEpochMilli(1_000),
+        netStartTimestampUtc = null,
+        netEndTimestampUtc = null,
+        totalFailureCount = 0,
+        additionalProperties = emptyMap(),
+        data = emptyList()
+    )
+}
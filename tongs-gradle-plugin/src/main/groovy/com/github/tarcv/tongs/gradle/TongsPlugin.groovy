@@ -97,6 +97,11 @@ class TongsPlugin implements Plugin<Project> {
                 poolingStrategy = config.poolingStrategy
                 ignoreFailures = config.ignoreFailures
                 excludedAnnotation = config.excludedAnnotation
+                deviceSetupConcurrency = config.deviceSetupConcurrency
+                testsBucket = config.testsBucket
+                logcatMemoryLimit = config.logcatMemoryLimit
+                logcatMinLevel = config.logcatMinLevel
+                logcatExcludedTags = config.logcatExcludedTags
                 tongsIntegrationTestRunType =
                         TongsConfiguration.TongsIntegrationTestRunType.valueOf(config.tongsIntegrationTestRunType)
 
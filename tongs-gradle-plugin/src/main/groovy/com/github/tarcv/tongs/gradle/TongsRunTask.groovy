@@ -77,6 +77,16 @@ class TongsRunTask extends DefaultTask implements VerificationTask {
 
     String excludedAnnotation
 
+    int deviceSetupConcurrency
+
+    int testsBucket
+
+    int logcatMemoryLimit
+
+    String logcatMinLevel
+
+    Collection<String> logcatExcludedTags
+
     TongsConfiguration.TongsIntegrationTestRunType tongsIntegrationTestRunType
 
     @TaskAction
@@ -107,6 +117,11 @@ class TongsRunTask extends DefaultTask implements VerificationTask {
                 .withPoolingStrategy(poolingStrategy)
                 .withExcludedAnnotation(excludedAnnotation)
                 .withTongsIntegrationTestRunType(tongsIntegrationTestRunType)
+                .withDeviceSetupConcurrency(deviceSetupConcurrency)
+                .withTestsBucket(testsBucket)
+                .withLogcatMemoryLimit(logcatMemoryLimit)
+                .withLogcatMinLevel(logcatMinLevel)
+                .withLogcatExcludedTags(logcatExcludedTags)
                 .withDdmTermination(false) // AGP doesn't terminate DdmLib, neither should Tongs
                 .build(true);
 
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Selects how the application under test is reset before each annotated test case.
+ * An annotation on a method takes precedence over one on its class.
+ */
+@Retention(RUNTIME)
+@Target({TYPE, METHOD})
+@Inherited
+public @interface DeviceReset {
+    Strategy value() default Strategy.CLEAR;
+
+    enum Strategy {
+        /**
+         * Clear data of the application and test packages before each test case
+         */
+        CLEAR,
+
+        /**
+         * Only stop the application, its data is kept between test cases
+         */
+        FORCE_STOP,
+
+        /**
+         * Clear data before the first test case of a class on a device, only stop the application before the others
+         */
+        CLEAR_ONCE_PER_CLASS,
+
+        /**
+         * Clear data before the first test case with this strategy on a device, and take a snapshot of the data
+         * once that test case passes. Restore data from the snapshot before the following test cases,
+         * so that they start from the state the first one set up.
+         * The application must be debuggable. Falls back to {@link #CLEAR} when the snapshot can't be used.
+         */
+        RESTORE_BASELINE
+    }
+}
@@ -20,14 +20,25 @@ import org.junit.runner.Description;
 import org.junit.runner.manipulation.Filter;
 
 import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
 
+/**
+ * Allows tests listed in tongs_filterClass and tongs_filterMethod arguments.
+ * Each argument is a comma separated list of Base64 encoded names, n-th class corresponds to n-th method.
+ */
 public class ClassMethodFilter extends Filter {
-    private final String expectedClassName;
-    private final String expectedMethodName;
+    private final Set<String> expectedTests = new HashSet<>();
 
     public ClassMethodFilter(Bundle bundle) {
-        this.expectedClassName = decode(bundle.getString("tongs_filterClass"));
-        this.expectedMethodName = decode(bundle.getString("tongs_filterMethod"));
+        String[] classNames = bundle.getString("tongs_filterClass").split(",");
+        String[] methodNames = bundle.getString("tongs_filterMethod").split(",");
+        if (classNames.length != methodNames.length) {
+            throw new IllegalArgumentException("Numbers of filtered classes and methods don't match");
+        }
+        for (int i = 0; i < classNames.length; i++) {
+            expectedTests.add(testKey(decode(classNames[i]), decode(methodNames[i])));
+        }
     }
 
     @Override
@@ -48,8 +59,12 @@ public class ClassMethodFilter extends Filter {
     private boolean checkTest(Description description) {
         String className = description.getClassName();
         String methodName = description.getMethodName();
-        return expectedClassName.equals(className)
-                    && expectedMethodName.equals(methodName);
+        return expectedTests.contains(testKey(className, methodName));
+    }
+
+    private static String testKey(String className, String methodName) {
+        // Class names can't contain '#'
+        return className + "#" + methodName;
     }
 
     private static  String decode(String encodedName) {
@@ -17,6 +17,11 @@ import com.android.ddmlib.IDevice;
 import com.github.tarcv.tongs.api.devices.Device;
 import com.github.tarcv.tongs.api.devices.Diagnostics;
 import com.github.tarcv.tongs.api.devices.DisplayGeometry;
+import com.github.tarcv.tongs.runner.DeviceArtifactPipeline;
+import com.github.tarcv.tongs.runner.DeviceResetState;
+import com.github.tarcv.tongs.runner.listeners.DeviceLogcat;
+import com.github.tarcv.tongs.system.DevicePermissionState;
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
@@ -41,6 +46,11 @@ public class AndroidDevice extends Device {
 	private final DisplayGeometry geometry;
     private final Diagnostics diagnostics;
 	private final AtomicBoolean hasOnDeviceLibrary = new AtomicBoolean(true);
+	private final transient DeviceResetState resetState = new DeviceResetState();
+	private final transient DeviceCommandBatch commandBatch = new DeviceCommandBatch(this);
+	private final transient DevicePermissionState permissionState = new DevicePermissionState();
+	private final transient DeviceLogcat logcat = new DeviceLogcat(this);
+	private final transient DeviceArtifactPipeline artifacts = new DeviceArtifactPipeline(this);
 
 	@NotNull
 	@Override
@@ -113,6 +123,26 @@ public class AndroidDevice extends Device {
 		hasOnDeviceLibrary.set(newValue);
 	}
 
+	public DeviceResetState getResetState() {
+		return resetState;
+	}
+
+	public DeviceCommandBatch getCommandBatch() {
+		return commandBatch;
+	}
+
+	public DevicePermissionState getPermissionState() {
+		return permissionState;
+	}
+
+	public DeviceLogcat getLogcat() {
+		return logcat;
+	}
+
+	public DeviceArtifactPipeline getArtifacts() {
+		return artifacts;
+	}
+
     public static class Builder {
         private String serial = "Unspecified serial";
         private String manufacturer = "Unspecified manufacturer";
@@ -12,13 +12,12 @@
  */
 package com.github.tarcv.tongs.runner
 
-import com.android.ddmlib.IDevice
-import com.android.ddmlib.NullOutputReceiver
 import com.github.tarcv.tongs.api.run.TestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
 import com.github.tarcv.tongs.model.AndroidDevice
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch
 
 class AndroidBasicUnlockTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidBasicUnlockTestCaseRunRule> {
     override fun testCaseRunRules(context: TestCaseRunRuleContext): Array<out AndroidBasicUnlockTestCaseRunRule> {
@@ -34,9 +33,13 @@ class AndroidBasicUnlockTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidB
 class AndroidBasicUnlockTestCaseRunRule(
         device: AndroidDevice
 ) : TestCaseRunRule {
-    private val device: IDevice = device.deviceInterface
+    private val commandBatch: DeviceCommandBatch = device.commandBatch
 
     override fun before() {
+        // This is the first rule to queue commands. Commands queued for a previous test case
+        // whose rules failed must not be executed for this one.
+        commandBatch.discardPending()
+
         unlockDeviceUsingMenuButton()
     }
 
@@ -45,9 +48,8 @@ class AndroidBasicUnlockTestCaseRunRule(
     }
 
     private fun unlockDeviceUsingMenuButton() {
-        val noOpReceiver = NullOutputReceiver()
         repeat (2) { // some devices require pressing MENU key twice
-            device.executeShellCommand("input keyevent 82", noOpReceiver)
+            commandBatch.add("input keyevent 82")
         }
     }
 
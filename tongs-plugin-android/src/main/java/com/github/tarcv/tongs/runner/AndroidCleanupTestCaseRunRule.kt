@@ -12,24 +12,59 @@
  */
 package com.github.tarcv.tongs.runner
 
-import com.android.ddmlib.*
+import com.github.tarcv.tongs.api.HasConfiguration
+import com.github.tarcv.tongs.api.run.ResultStatus
 import com.github.tarcv.tongs.api.run.TestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
 import com.github.tarcv.tongs.model.AndroidDevice
+import com.github.tarcv.tongs.runner.DeviceResetState.Baseline
+import com.github.tarcv.tongs.system.DevicePermissionState
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch
 import org.slf4j.LoggerFactory
-import java.io.IOException
 import java.lang.String.format
 
-class AndroidCleanupTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidCleanupTestCaseRunRule> {
+/**
+ * Mirrors com.github.tarcv.tongs.DeviceReset.Strategy from tongs-ondevice
+ */
+enum class ResetStrategy {
+    CLEAR,
+    FORCE_STOP,
+    CLEAR_ONCE_PER_CLASS,
+    RESTORE_BASELINE
+}
+
+class AndroidCleanupTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidCleanupTestCaseRunRule>, HasConfiguration {
+    override val configurationSections: Array<String> = arrayOf("androidDeviceReset")
+
     override fun testCaseRunRules(context: TestCaseRunRuleContext): Array<out AndroidCleanupTestCaseRunRule> {
+        val pluginConfiguration = context.configuration.pluginConfiguration
+        val packagePrefix = pluginConfiguration["package"] as? String
+            ?: "com.github.tarcv.tongs"
+        val defaultStrategy = (pluginConfiguration["defaultStrategy"] as? String)
+            ?.let { ResetStrategy.valueOf(it) }
+            ?: ResetStrategy.CLEAR
+
         val device = context.device
         return if (device is AndroidDevice) {
+            val testCase = context.testCaseEvent.testCase
+
+            // Annotations of a method come after annotations of its classes
+            val strategy = testCase.annotations
+                    .lastOrNull { it.fullyQualifiedName == "$packagePrefix.DeviceReset" }
+                    ?.let {
+                        // Default values of annotation elements are not stored in dex files
+                        val value = it.properties["value"] as String? ?: ResetStrategy.CLEAR.name
+                        ResetStrategy.valueOf(value)
+                    }
+                    ?: defaultStrategy
             arrayOf(AndroidCleanupTestCaseRunRule(
                     device,
                     context.configuration.applicationPackage,
-                    context.configuration.instrumentationPackage
+                    context.configuration.instrumentationPackage,
+                    strategy,
+                    testCase.testClass
             ))
         } else {
             emptyArray()
@@ -40,47 +75,119 @@ class AndroidCleanupTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidClean
 class AndroidCleanupTestCaseRunRule(
         device: AndroidDevice,
         private val applicationPackage: String,
-        private val testPackage: String
+        private val testPackage: String,
+        private val strategy: ResetStrategy,
+        private val testClass: String
 ) : TestCaseRunRule {
     private val logger = LoggerFactory.getLogger(AndroidInstrumentedTestRun::class.java)
-    private val device: IDevice = device.deviceInterface
+    private val commandBatch: DeviceCommandBatch = device.commandBatch
+    private val resetState: DeviceResetState = device.resetState
+    private val permissionState: DevicePermissionState = device.permissionState
+    private val capturingPackages = ArrayList<String>()
 
     override fun before() {
-        clearPackageData(device, applicationPackage)
-        clearPackageData(device, testPackage)
+        val effectiveStrategy = resetState.resolveStrategy(strategy, testClass)
+
+        for (packageName in listOf(applicationPackage, testPackage)) {
+            when (effectiveStrategy) {
+                ResetStrategy.CLEAR, ResetStrategy.CLEAR_ONCE_PER_CLASS -> clearPackageData(packageName)
+                ResetStrategy.FORCE_STOP -> forceStop(packageName)
+                ResetStrategy.RESTORE_BASELINE -> restoreBaseline(packageName)
+            }
+        }
         resetToHomeScreen()
     }
 
     override fun after(arguments: TestCaseRunRuleAfterArguments) {
+        val isPassed = arguments.result.status == ResultStatus.PASS
+        capturingPackages.forEach { packageName ->
+            if (isPassed) {
+                captureBaseline(packageName)
+            } else {
+                logger.info("Test case failed, baseline data of {} will be captured after another test case",
+                        packageName)
+                resetState.finishCapturing(packageName, null)
+            }
+        }
+        capturingPackages.clear()
     }
 
     /**
      * Reset device to Home Screen and close soft keyboard if it is still open
      */
     private fun resetToHomeScreen() {
-        val noOpReceiver = NullOutputReceiver()
-        device.executeShellCommand("input keyevent 3", noOpReceiver) // HOME
-        device.executeShellCommand("input keyevent 4", noOpReceiver) // BACK
+        commandBatch.add("input keyevent 3") // HOME
+        commandBatch.add("input keyevent 4") // BACK
     }
 
-    private fun clearPackageData(device: IDevice, applicationPackage: String) {
+    private fun clearPackageData(applicationPackage: String) {
+        // Rules executed after this one see the state as it will be after the queued command
+        permissionState.onDataCleared(applicationPackage)
+        commandBatch.add(format("pm clear %s", applicationPackage)) {
+            if (it.exitCode == null) {
+                throw UnsupportedOperationException(format("Unable to clear package data (%s)", applicationPackage))
+            } else if (!it.isSuccessful) {
+                logger.error("Failed to clear application data: {} (exit code {}): {}",
+                        applicationPackage, it.exitCode, it.output)
+            } else {
+                logger.debug("Clearing application data: {}", applicationPackage)
+            }
+        }
+    }
+
+    private fun forceStop(applicationPackage: String) {
+        commandBatch.add(format("am force-stop %s", applicationPackage))
+    }
+
+    /**
+     * Replaces data of a package with a snapshot taken after the first passed test case with this strategy
+     * on the device, so that test cases can share the state the first one set up (e.g. a finished onboarding).
+     * Data is cleared before the snapshot is taken. The snapshot is read and written with run-as,
+     * so it only works for debuggable packages, otherwise the data is cleared.
+     */
+    private fun restoreBaseline(applicationPackage: String) {
         val start = System.currentTimeMillis()
 
-        try {
-            val command = format("pm clear %s", applicationPackage)
-            logger.info("Cmd: $command")
-            device.executeShellCommand(command, NullOutputReceiver())
-        } catch (e: TimeoutException) {
-            throw UnsupportedOperationException(format("Unable to clear package data (%s)", applicationPackage), e)
-        } catch (e: AdbCommandRejectedException) {
-            throw UnsupportedOperationException(format("Unable to clear package data (%s)", applicationPackage), e)
-        } catch (e: ShellCommandUnresponsiveException) {
-            throw UnsupportedOperationException(format("Unable to clear package data (%s)", applicationPackage), e)
-        } catch (e: IOException) {
-            throw UnsupportedOperationException(format("Unable to clear package data (%s)", applicationPackage), e)
+        when (resetState.baselineOf(applicationPackage)) {
+            null, Baseline.CAPTURING -> {
+                clearPackageData(applicationPackage)
+                if (resetState.startCapturing(applicationPackage)) {
+                    capturingPackages.add(applicationPackage)
+                }
+            }
+            Baseline.CAPTURED -> {
+                forceStop(applicationPackage)
+                val restored = commandBatch.execute(
+                        "run-as $applicationPackage sh -c 'for f in * .[!.]*; do [ \"\$f\" = lib ] || rm -rf \"\$f\"; done'" +
+                                " && cat ${snapshotPathOf(applicationPackage)} | run-as $applicationPackage tar -xf -"
+                ).isSuccessful
+                if (restored) {
+                    logger.debug("Restoring baseline data: {} (took {}ms)", applicationPackage, System.currentTimeMillis() - start)
+                } else {
+                    logger.warn("Failed to restore baseline data of {}, clearing its data instead", applicationPackage)
+                    clearPackageData(applicationPackage)
+                }
+            }
+            Baseline.UNAVAILABLE -> clearPackageData(applicationPackage)
         }
+    }
 
-        logger.debug("Clearing application data: {} (took {}ms)", applicationPackage, System.currentTimeMillis() - start)
+    private fun captureBaseline(applicationPackage: String) {
+        // Stays null when the device failed to execute the command, so that capturing is tried again
+        var baseline: Baseline? = null
+        try {
+            val captured = commandBatch.execute(
+                    "am force-stop $applicationPackage" +
+                            " && run-as $applicationPackage tar --exclude=./lib -cf - . > ${snapshotPathOf(applicationPackage)}"
+            ).isSuccessful
+            baseline = if (captured) Baseline.CAPTURED else Baseline.UNAVAILABLE
+            if (!captured) {
+                logger.warn("Failed to capture baseline data of {}, its data will be cleared instead", applicationPackage)
+            }
+        } finally {
+            resetState.finishCapturing(applicationPackage, baseline)
+        }
     }
 
-}
\ No newline at end of file
+    private fun snapshotPathOf(applicationPackage: String) = "/data/local/tmp/tongs-baseline-$applicationPackage.tar"
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.run.TestCaseRunRule
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
+import com.github.tarcv.tongs.model.AndroidDevice
+
+/**
+ * Must be the last of the predefined factories, after all rules that queue commands to
+ * [AndroidDevice.getCommandBatch]. Rules executed after it (e.g. ones of user plugins) should use
+ * [com.github.tarcv.tongs.system.adb.DeviceCommandBatch.execute] instead of queueing commands.
+ */
+class AndroidCommandBatchTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidCommandBatchTestCaseRunRule> {
+    override fun testCaseRunRules(context: TestCaseRunRuleContext): Array<out AndroidCommandBatchTestCaseRunRule> {
+        val device = context.device
+        return if (device is AndroidDevice) {
+            arrayOf(AndroidCommandBatchTestCaseRunRule(device))
+        } else {
+            emptyArray()
+        }
+    }
+}
+
+/**
+ * Executes commands that the preceding Android rules queued to [AndroidDevice.getCommandBatch], so that rules
+ * executed after it see the device as it is after the queued commands (e.g. already unlocked).
+ */
+class AndroidCommandBatchTestCaseRunRule(
+        private val device: AndroidDevice
+) : TestCaseRunRule {
+    override fun before() {
+        device.commandBatch.flush()
+    }
+
+    override fun after(arguments: TestCaseRunRuleAfterArguments) {
+        // nothing to do after running a test
+    }
+}
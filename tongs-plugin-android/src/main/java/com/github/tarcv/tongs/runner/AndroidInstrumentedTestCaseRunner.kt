@@ -17,6 +17,7 @@ import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.devices.Pool
 import com.github.tarcv.tongs.api.result.RunTesult
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.api.run.*
 import com.github.tarcv.tongs.api.testcases.TestCase
 import com.github.tarcv.tongs.injector.runner.TestRunFactoryInjector
@@ -29,12 +30,14 @@ class AndroidInstrumentedTestCaseRunnerFactory: TestCaseRunnerFactory<AndroidIns
     }
 }
 
-class AndroidInstrumentedTestCaseRunner(val context: TestCaseRunnerContext): TestCaseRunner {
+class AndroidInstrumentedTestCaseRunner(val context: TestCaseRunnerContext): BucketTestCaseRunner {
     override fun supports(device: Device, testCase: TestCase): Boolean {
         return device is AndroidDevice && testCase.typeTag == ApkTestCase::class.java
     }
 
-    override fun run(arguments: TestCaseRunnerArguments): RunTesult {
+    override fun run(arguments: TestCaseRunnerArguments): RunTesult = execute(arguments)
+
+    private fun execute(arguments: TestCaseRunnerArguments): TestCaseRunResult {
         val androidTestRunFactory = TestRunFactoryInjector.testRunFactory(context.configuration)
         val runContext = AndroidRunContext(context, arguments)
         val testRun = androidTestRunFactory.createTestRun(runContext, arguments.testCaseEvent,
@@ -43,6 +46,19 @@ class AndroidInstrumentedTestCaseRunner(val context: TestCaseRunnerContext): Tes
         return testRun.execute()
     }
 
+    override fun runBucket(arguments: List<TestCaseRunnerArguments>): List<TestCaseRunResult?> {
+        if (context.configuration.isCoverageEnabled) {
+            // Coverage is collected per instrumentation run, so each test case needs its own run
+            return arguments.map { execute(it) }
+        }
+
+        val androidTestRunFactory = TestRunFactoryInjector.testRunFactory(context.configuration)
+        val testRun = androidTestRunFactory.createBucketTestRun(
+                arguments.map { AndroidRunContext(context, it) },
+                context.device as AndroidDevice,
+                context.pool)
+        return testRun.executeBucket()
+    }
 }
 
 class AndroidRunContext(
@@ -30,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -46,21 +47,52 @@ public class AndroidInstrumentedTestRun {
 	private final TestRunParameters testRunParameters;
 	private final List<? extends ITestRunListener> testRunListeners;
 	private final IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory;
-	private final IResultProducer resultProducer;
+	private final List<? extends IResultProducer> resultProducers;
 
+	/**
+	 * @param resultProducers producers of results for {@link TestRunParameters#getTests()}, in the same order.
+	 *                        For a bucket run, {@code testRunListeners} must be in that order too
+	 */
 	public AndroidInstrumentedTestRun(String poolName,
                                       TestRunParameters testRunParameters,
                                       List<? extends ITestRunListener> testRunListeners,
-                                      IResultProducer resultProducer,
+                                      List<? extends IResultProducer> resultProducers,
                                       IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory) {
 		this.poolName = poolName;
 		this.testRunParameters = testRunParameters;
 		this.testRunListeners = testRunListeners;
-		this.resultProducer = resultProducer;
+		this.resultProducers = resultProducers;
 		this.remoteAndroidTestRunnerFactory = remoteAndroidTestRunnerFactory;
 	}
 
 	public TestCaseRunResult execute() {
+		runInstrumentation();
+		return resultProducers.get(0).getResult();
+	}
+
+	/**
+	 * Executes all tests in one instrumentation run
+	 * @return results in the order of tests, null for tests that were not finished (e.g. the instrumentation crashed)
+	 */
+	public List<TestCaseRunResult> executeBucket() {
+		try {
+			runInstrumentation();
+		} catch (ConnectionLostException e) {
+			// Tests that already reported their results keep them, the rest are executed again separately
+			logger.warn("Connection to the device was lost during a bucket run, unfinished tests will be executed again", e);
+		}
+
+		List<TestCaseRunResult> results = new ArrayList<>();
+		for (int i = 0; i < resultProducers.size(); i++) {
+			ITestRunListener testRunListener = testRunListeners.get(i);
+			boolean isFinished = !(testRunListener instanceof RunListenerAdapter)
+					|| ((RunListenerAdapter) testRunListener).hasExpectedTestResult();
+			results.add(isFinished ? resultProducers.get(i).getResult() : null);
+		}
+		return results;
+	}
+
+	private void runInstrumentation() {
 		final String testPackage = testRunParameters.getTestPackage();
 		final IDevice device = testRunParameters.getDeviceInterface();
 		final RemoteAndroidTestRunner runner =
@@ -70,28 +102,43 @@ public class AndroidInstrumentedTestRun {
 		runner.setMaxtimeToOutputResponse(testRunParameters.getTestOutputTimeout());
 
 		// Custom filter is required to support Parameterized tests with default names
-		final TestCaseEvent test = testRunParameters.getTest();
+		final List<TestCaseEvent> tests = testRunParameters.getTests();
 		final String testClassName;
 		final String testMethodName;
 		final String specialFilter;
-		if (test != null) {
-			final TestCase testCase = test.getTestCase();
-			testClassName = test.getTestClass();
-			testMethodName = test.getTestMethod();
+		if (!tests.isEmpty()) {
+			if (tests.size() == 1) {
+				testClassName = tests.get(0).getTestClass();
+				testMethodName = tests.get(0).getTestMethod();
+			} else {
+				testClassName = "Bucket of " + tests.size() + " tests starting with " + tests.get(0).getTestClass();
+				testMethodName = tests.get(0).getTestMethod();
+			}
 			specialFilter = TESTCASE_FILTER;
 
+			// Names are Base64 encoded, so a comma can safely separate tests in the on-device filter
 			if (testRunParameters.isWithOnDeviceLibrary()) {
-				String encodedClassName = remoteAndroidTestRunnerFactory.encodeTestName(testClassName);
-				String encodedMethodName = remoteAndroidTestRunnerFactory.encodeTestName(testMethodName);
-
-				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterClass", encodedClassName);
-				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterMethod", encodedMethodName);
+				String encodedClassNames = tests.stream()
+						.map(test -> remoteAndroidTestRunnerFactory.encodeTestName(test.getTestClass()))
+						.collect(Collectors.joining(","));
+				String encodedMethodNames = tests.stream()
+						.map(test -> remoteAndroidTestRunnerFactory.encodeTestName(test.getTestMethod()))
+						.collect(Collectors.joining(","));
+
+				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterClass", encodedClassNames);
+				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterMethod", encodedMethodNames);
 			} else {
 				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "class",
-						testClassName + "#" + testMethodName);
+						tests.stream()
+								.map(test -> test.getTestClass() + "#" + test.getTestMethod())
+								.collect(Collectors.joining(",")));
 			}
 
 			if (testRunParameters.isCoverageEnabled()) {
+				if (tests.size() > 1) {
+					throw new IllegalStateException("Coverage can't be collected for several tests in one run");
+				}
+				final TestCase testCase = tests.get(0).getTestCase();
 				runner.setCoverage(true);
 				runner.addInstrumentationArg("coverageFile", RemoteFileManager.getCoverageFileName(testCase));
 			}
@@ -127,7 +174,7 @@ public class AndroidInstrumentedTestRun {
 		} catch (ShellCommandUnresponsiveException | TimeoutException e) {
 			logger.warn("Test: " + testClassName + " got stuck. You can increase the timeout in settings if it's too strict");
 		} catch (AdbCommandRejectedException | IOException e) {
-			throw new RuntimeException(format("Error while running test %s %s", testClassName, testMethodName), e);
+			throw new ConnectionLostException(format("Error while running test %s %s", testClassName, testMethodName), e);
 		} finally {
 			for (ITestRunListener testRunListener : testRunListeners) { // TODO: refactor this
 				if (testRunListener instanceof RunListenerAdapter) {
@@ -135,9 +182,7 @@ public class AndroidInstrumentedTestRun {
 				}
 			}
 		}
-
-        return resultProducer.getResult();
-    }
+	}
 
 	private void addFilterAndCustomArgs(RemoteAndroidTestRunner runner, @Nullable String collectingRunFilter) {
 		testRunParameters.getTestRunnerArguments().entrySet().stream()
@@ -157,4 +202,10 @@ public class AndroidInstrumentedTestRun {
 			runner.addInstrumentationArg(FILTER_ARGUMENT, filters);
 		}
 	}
+
+	private static class ConnectionLostException extends RuntimeException {
+		ConnectionLostException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
 }
@@ -13,7 +13,6 @@
  */
 package com.github.tarcv.tongs.runner
 
-import com.android.ddmlib.IDevice
 import com.github.tarcv.tongs.api.HasConfiguration
 import com.github.tarcv.tongs.api.TongsConfiguration
 import com.github.tarcv.tongs.api.run.TestCaseRunRule
@@ -43,7 +42,7 @@ class AndroidPermissionGrantingTestCaseRunRuleFactory : TestCaseRunRuleFactory<A
                         }
                     }
             arrayOf(
-                    AndroidPermissionGrantingTestCaseRunRule(context.configuration, device.deviceInterface, permissionsToGrant)
+                    AndroidPermissionGrantingTestCaseRunRule(context.configuration, device, permissionsToGrant)
             )
         } else {
             return emptyArray()
@@ -51,22 +50,31 @@ class AndroidPermissionGrantingTestCaseRunRuleFactory : TestCaseRunRuleFactory<A
     }
 }
 
+/**
+ * Permissions stay granted after a test case, so that the next test case that needs them doesn't have to grant
+ * them again. Permissions the next test case doesn't need are revoked before it starts, unless a test case
+ * executed in the same bucket needs them. The remaining ones are revoked by [AndroidSetupDeviceRule]
+ * when the device is released.
+ */
 class AndroidPermissionGrantingTestCaseRunRule(
         private val configuration: TongsConfiguration,
-        private val deviceInterface: IDevice,
+        private val device: AndroidDevice,
         private val permissionsToGrant: List<String>
 ) : TestCaseRunRule {
     private val permissionGrantingManager = PermissionGrantingManager()
 
     override fun before() {
-        permissionGrantingManager.grantPermissions(configuration.applicationPackage,
-                deviceInterface, permissionsToGrant)
-        permissionGrantingManager.grantPermissions(configuration.instrumentationPackage,
-                deviceInterface, permissionsToGrant)
+        device.permissionState.acquire(permissionsToGrant)
+        permissionGrantingManager.applyPermissions(configuration.applicationPackage,
+                device.commandBatch, device.permissionState, permissionsToGrant, true)
+
+        // Permissions were never revoked from the instrumentation package
+        permissionGrantingManager.applyPermissions(configuration.instrumentationPackage,
+                device.commandBatch, device.permissionState, permissionsToGrant, false)
     }
 
     override fun after(arguments: TestCaseRunRuleAfterArguments) {
-        permissionGrantingManager.revokePermissions(configuration.applicationPackage,
-                deviceInterface, permissionsToGrant)
+        // permissions are revoked before the next test case if it doesn't need them
+        device.permissionState.release(permissionsToGrant)
     }
 }
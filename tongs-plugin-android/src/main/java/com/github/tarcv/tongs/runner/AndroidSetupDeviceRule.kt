@@ -20,8 +20,10 @@ import com.github.tarcv.tongs.api.run.DeviceRunRuleFactory
 import com.github.tarcv.tongs.device.clearLogcat
 import com.github.tarcv.tongs.injector.system.InstallerInjector.installer
 import com.github.tarcv.tongs.model.AndroidDevice
+import com.github.tarcv.tongs.system.PermissionGrantingManager
 import com.github.tarcv.tongs.system.adb.PackageInstaller
 import com.github.tarcv.tongs.system.io.RemoteFileManager
+import org.slf4j.LoggerFactory
 
 class AndroidSetupDeviceRuleFactory : DeviceRunRuleFactory<AndroidSetupDeviceRule> {
     override fun deviceRules(context: DeviceRunRuleContext): Array<out AndroidSetupDeviceRule> {
@@ -37,6 +39,10 @@ class AndroidSetupDeviceRuleFactory : DeviceRunRuleFactory<AndroidSetupDeviceRul
 }
 
 class AndroidSetupDeviceRule(private val device: AndroidDevice, private val installer: PackageInstaller) : DeviceRunRule {
+    companion object {
+        private val logger = LoggerFactory.getLogger(AndroidSetupDeviceRule::class.java)
+    }
+
     override fun before() {
         DdmPreferences.setTimeOut(30000)
         installer.resetInstallation(device)
@@ -47,9 +53,32 @@ class AndroidSetupDeviceRule(private val device: AndroidDevice, private val inst
         RemoteFileManager.createRemoteDirectory(deviceInterface)
 
         clearLogcat(deviceInterface)
+
+        // Kept running for all test cases on the device, they take their slices of it
+        device.logcat.start()
     }
 
     override fun after() {
-        // no-op
+        revokeGrantedPermissions()
+
+        // Artifacts of the last test cases might still be transferring. Device rules are finished before reports
+        // are generated, so reports can reference the transferred files.
+        device.artifacts.awaitIdle()
+        device.logcat.stop()
     }
-}
\ No newline at end of file
+
+    /**
+     * Permissions are revoked only before test cases that don't need them, so the last test case leaves its ones granted
+     */
+    private fun revokeGrantedPermissions() {
+        if (!device.isAvailable) {
+            return
+        }
+        try {
+            PermissionGrantingManager().revokeAll(device.commandBatch, device.permissionState)
+            device.commandBatch.flush()
+        } catch (e: UnsupportedOperationException) {
+            logger.warn("Failed to revoke permissions granted on {}", device.serial, e)
+        }
+    }
+}
@@ -45,7 +45,7 @@ public class AndroidTestRunFactory {
     public AndroidInstrumentedTestRun createTestRun(AndroidRunContext testRunContext, TestCaseEvent testCase,
                                                     AndroidDevice device,
                                                     Pool pool) {
-        TestRunParameters testRunParameters = createTestParameters(testCase,
+        TestRunParameters testRunParameters = createTestParameters(Collections.singletonList(testCase),
                 device,
                 configuration,
                 device.hasOnDeviceLibrary());
@@ -59,9 +59,42 @@ public class AndroidTestRunFactory {
                 Collections.singletonList(
                         new RunListenerAdapter(testCase.toString(),
                                 new TestIdentifier(testCase.getTestClass(), testCase.getTestMethod()),
-                                testRunListeners)
+                                testRunListeners,
+                                false)
                 ),
-                resultProducer,
+                Collections.singletonList(resultProducer),
+                RemoteAndroidTestRunnerFactoryInjector.remoteAndroidTestRunnerFactory(configuration)
+        );
+    }
+
+    public AndroidInstrumentedTestRun createBucketTestRun(List<AndroidRunContext> testRunContexts,
+                                                          AndroidDevice device,
+                                                          Pool pool) {
+        List<TestCaseEvent> testCases = new ArrayList<>();
+        List<IResultProducer> resultProducers = new ArrayList<>();
+        List<RunListenerAdapter> listenerAdapters = new ArrayList<>();
+        for (AndroidRunContext testRunContext : testRunContexts) {
+            TestCaseEvent testCase = testRunContext.getTestCaseEvent();
+            IResultProducer resultProducer = createResultProducer(testRunContext);
+
+            testCases.add(testCase);
+            resultProducers.add(resultProducer);
+            listenerAdapters.add(new RunListenerAdapter(testCase.toString(),
+                    new TestIdentifier(testCase.getTestClass(), testCase.getTestMethod()),
+                    new ArrayList<>(resultProducer.requestListeners()),
+                    true));
+        }
+
+        TestRunParameters testRunParameters = createTestParameters(testCases,
+                device,
+                configuration,
+                device.hasOnDeviceLibrary());
+
+        return new AndroidInstrumentedTestRun(
+                pool.getName(),
+                testRunParameters,
+                listenerAdapters,
+                resultProducers,
                 RemoteAndroidTestRunnerFactoryInjector.remoteAndroidTestRunnerFactory(configuration)
         );
     }
@@ -75,7 +108,7 @@ public class AndroidTestRunFactory {
                                                           Pool pool,
                                                           TestCollectingListener testCollectingListener,
                                                           boolean withOnDeviceLib) {
-        TestRunParameters testRunParameters = createTestParameters(null,
+        TestRunParameters testRunParameters = createTestParameters(Collections.emptyList(),
                 device,
                 configuration,
                 withOnDeviceLib);
@@ -86,15 +119,15 @@ public class AndroidTestRunFactory {
                 pool.getName(),
                 testRunParameters,
                 testRunListeners,
-                new TestCollectorResultProducer(pool, device),
+                Collections.singletonList(new TestCollectorResultProducer(pool, device)),
                 RemoteAndroidTestRunnerFactoryInjector.remoteAndroidTestRunnerFactory(configuration)
         );
     }
 
-    private static TestRunParameters createTestParameters(TestCaseEvent testCase, AndroidDevice device, TongsConfiguration configuration, boolean withOnDeviceLib) {
+    private static TestRunParameters createTestParameters(List<TestCaseEvent> testCases, AndroidDevice device, TongsConfiguration configuration, boolean withOnDeviceLib) {
         return TestRunParameters.Builder.testRunParameters()
                 .withDeviceInterface(device.getDeviceInterface())
-                .withTest(testCase)
+                .withTests(testCases)
                 .withTestPackage(configuration.getInstrumentationPackage())
                 .withApplicationPackage(configuration.getApplicationPackage())
                 .withTestRunner(configuration.getTestRunnerClass())
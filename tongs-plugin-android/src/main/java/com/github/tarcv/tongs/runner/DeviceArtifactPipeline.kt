@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.Utils
+import com.github.tarcv.tongs.model.AndroidDevice
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import javax.annotation.concurrent.GuardedBy
+
+/**
+ * Pulls and encodes artifacts of finished test cases in background, so that the device can start its next test case
+ * while they are still being transferred.
+ *
+ * Jobs of all devices share a pool of [workerCount] threads. Each device tracks its own outstanding jobs,
+ * so that device teardown and report generation can wait for them with [awaitIdle].
+ *
+ * @param idleTimeoutMillis maximum time to wait for outstanding jobs, jobs still running after it are abandoned
+ */
+class DeviceArtifactPipeline @JvmOverloads constructor(
+        private val device: AndroidDevice,
+        private val idleTimeoutMillis: Long = defaultIdleTimeoutMillis
+) {
+    private val lock = Any()
+    @GuardedBy("lock") private val outstanding = HashMap<CompletableFuture<Void>, String>()
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(DeviceArtifactPipeline::class.java)
+
+        val workerCount = Runtime.getRuntime().availableProcessors().coerceIn(2, 8)
+
+        /**
+         * Jobs wait for recordings to stop on the device, which never happens when the device is disconnected
+         */
+        private const val defaultIdleTimeoutMillis = 120_000L
+
+        // Daemon threads, so that a job stuck on a disconnected device doesn't keep the JVM alive
+        private val executor: ExecutorService = Executors.newFixedThreadPool(
+                workerCount,
+                ThreadFactoryBuilder()
+                        .setNameFormat("ArtifactWorker-%d")
+                        .setDaemon(true)
+                        .build()
+        )
+    }
+
+    /**
+     * Failures of [job] are logged and don't affect the result of the test case
+     * @param description what the job does, e.g. "pull the video"
+     */
+    fun submit(description: String, job: Runnable): CompletableFuture<Void> {
+        val future = CompletableFuture.runAsync({
+            val startNanos = System.nanoTime()
+            try {
+                job.run()
+                logger.trace("Finished to {} of {} in {}ms",
+                        description, device.serial, Utils.millisSinceNanoTime(startNanos))
+            } catch (e: Exception) {
+                logger.error("Failed to {} of {}", description, device.serial, e)
+            }
+        }, executor)
+        synchronized(lock) {
+            outstanding[future] = description
+        }
+        future.whenComplete { _, _ ->
+            synchronized(lock) {
+                outstanding.remove(future)
+            }
+        }
+        return future
+    }
+
+    /**
+     * @return a future that completes once jobs submitted before this call are finished. It completes
+     *  exceptionally with [TimeoutException] when they don't finish in time, and right away when the device
+     *  is not available anymore. Jobs that are not finished in these cases are abandoned.
+     */
+    fun whenIdle(): CompletableFuture<Void> {
+        val pending = synchronized(lock) { outstanding.keys.toList() }
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null)
+        }
+        if (!device.isAvailable) {
+            abandon(pending, "the device is not available anymore")
+            return CompletableFuture.completedFuture(null)
+        }
+
+        return CompletableFuture.allOf(*pending.toTypedArray())
+                .orTimeout(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete { _, e ->
+                    if (e is TimeoutException) {
+                        abandon(pending, "they didn't finish in ${idleTimeoutMillis}ms")
+                    }
+                }
+    }
+
+    /**
+     * Waits for jobs submitted before this call, see [whenIdle]
+     */
+    fun awaitIdle() {
+        val pendingCount = synchronized(lock) { outstanding.size }
+        if (pendingCount == 0) {
+            return
+        }
+
+        val startNanos = System.nanoTime()
+        logger.info("Waiting for {} artifact jobs of {}", pendingCount, device.serial)
+        try {
+            whenIdle().join()
+        } catch (e: CompletionException) {
+            // Jobs that didn't finish in time are already logged
+        }
+        logger.info("Finished waiting for artifact jobs of {} in {}ms",
+                device.serial, Utils.millisSinceNanoTime(startNanos))
+    }
+
+    /**
+     * Stops tracking [jobs]. They keep running, as they can't be interrupted reliably while transferring files.
+     */
+    private fun abandon(jobs: List<CompletableFuture<Void>>, reason: String) {
+        val abandoned = synchronized(lock) {
+            jobs.mapNotNull { outstanding.remove(it) }
+        }
+        if (abandoned.isNotEmpty()) {
+            logger.warn("Abandoned artifact jobs of {} as {}: {}", device.serial, reason, abandoned)
+        }
+    }
+}
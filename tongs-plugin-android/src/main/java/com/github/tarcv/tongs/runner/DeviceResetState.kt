@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import javax.annotation.concurrent.GuardedBy
+
+/**
+ * What [AndroidCleanupTestCaseRunRule] remembers about a device between test cases
+ */
+class DeviceResetState {
+    private val lock = Any()
+    @GuardedBy("lock") private var lastTestClass: String? = null
+    @GuardedBy("lock") private val baselines = HashMap<String, Baseline>()
+
+    enum class Baseline {
+        /**
+         * The snapshot will be taken after the test case that is currently executed
+         */
+        CAPTURING,
+        CAPTURED,
+        UNAVAILABLE
+    }
+
+    /**
+     * Remembers [testClass] as the class of the current test case and resolves strategies
+     * that depend on previous test cases on the device
+     */
+    fun resolveStrategy(strategy: ResetStrategy, testClass: String): ResetStrategy = synchronized(lock) {
+        val isNewClass = lastTestClass != testClass
+        lastTestClass = testClass
+        if (strategy == ResetStrategy.CLEAR_ONCE_PER_CLASS) {
+            if (isNewClass) ResetStrategy.CLEAR else ResetStrategy.FORCE_STOP
+        } else {
+            strategy
+        }
+    }
+
+    fun baselineOf(applicationPackage: String): Baseline? = synchronized(lock) {
+        baselines[applicationPackage]
+    }
+
+    /**
+     * @return true when the caller should take the snapshot of [applicationPackage] after its test case,
+     *  false when another test case already does that or the snapshot is already known
+     */
+    fun startCapturing(applicationPackage: String): Boolean = synchronized(lock) {
+        if (baselines.containsKey(applicationPackage)) {
+            false
+        } else {
+            baselines[applicationPackage] = Baseline.CAPTURING
+            true
+        }
+    }
+
+    /**
+     * @param baseline null when the snapshot should be taken after another test case
+     */
+    fun finishCapturing(applicationPackage: String, baseline: Baseline?) {
+        synchronized(lock) {
+            check(baselines[applicationPackage] == Baseline.CAPTURING) { "Baseline is not being captured" }
+            if (baseline == null) {
+                baselines.remove(applicationPackage)
+            } else {
+                baselines[applicationPackage] = baseline
+            }
+        }
+    }
+}
@@ -89,14 +89,20 @@ class TestAndroidTestRunnerFactory : IRemoteAndroidTestRunnerFactory {
                         listeners.testRunEnded(100, emptyMap())
                     }
                     in TestIdentifierCommandPattern -> {
-                        val (filter, testClass, testMethod) =
+                        val (filter, testClasses, testMethods) =
                                 TestIdentifierCommandPattern.matchEntire(command)
                                         ?.groupValues
                                         ?.drop(1) // group 0 is the entire match
                                         ?.map { StringEscapeUtils.unescapeXSI(it) }
                                         ?: throw IllegalStateException()
-                        listeners.testRunStarted("emulators", 1)
-                        listeners.fireTest("$testClass#$testMethod", functionalTestTestIdentifierDuration)
+                        // Several tests are passed as comma separated lists when tests are run in buckets
+                        val testIdentifiers = testClasses.split(",")
+                                .zip(testMethods.split(","))
+                                .map { (testClass, testMethod) -> "$testClass#$testMethod" }
+                        listeners.testRunStarted("emulators", testIdentifiers.size)
+                        testIdentifiers.forEach {
+                            listeners.fireTest(it, functionalTestTestIdentifierDuration)
+                        }
                         listeners.testRunEnded(functionalTestTestIdentifierDuration, emptyMap())
                     }
                     else -> throw IllegalStateException(
@@ -16,10 +16,12 @@ package com.github.tarcv.tongs.runner;
 import com.android.ddmlib.IDevice;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class TestRunParameters {
-	private final TestCaseEvent test;
+	private final List<TestCaseEvent> tests;
 	private final String testPackage;
 	private final String testRunner;
 	private final Map<String, String> testRunnerArguments;
@@ -30,8 +32,11 @@ public class TestRunParameters {
 	private final String applicationPackage;
 	private final boolean withOnDeviceLibrary;
 
-	public TestCaseEvent getTest() {
-		return test;
+	/**
+	 * @return tests to execute in one instrumentation run, empty for a test collecting run
+	 */
+	public List<TestCaseEvent> getTests() {
+		return tests;
 	}
 
 	public String getTestPackage() {
@@ -71,7 +76,7 @@ public class TestRunParameters {
 	}
 
 	public static class Builder {
-		private TestCaseEvent test;
+		private List<TestCaseEvent> tests = Collections.emptyList();
 		private String testPackage;
 		private String testRunner;
 		private Map<String, String> testRunnerArguments;
@@ -86,8 +91,8 @@ public class TestRunParameters {
 			return new Builder();
 		}
 
-		public Builder withTest(TestCaseEvent test) {
-			this.test = test;
+		public Builder withTests(List<TestCaseEvent> tests) {
+			this.tests = tests;
 			return this;
 		}
 
@@ -142,7 +147,7 @@ public class TestRunParameters {
     }
 
 	private TestRunParameters(Builder builder) {
-		test = builder.test;
+		tests = builder.tests;
 		testPackage = builder.testPackage;
 		testRunner = builder.testRunner;
 		testRunnerArguments = builder.testRunnerArguments;
@@ -33,4 +33,11 @@ class CompositeLogCatWriter implements LogCatWriter {
 		}
 	}
 
+	@Override
+	public void close() {
+		for (LogCatWriter logCatWriter : logCatWriters) {
+			logCatWriter.close();
+		}
+	}
+
 }
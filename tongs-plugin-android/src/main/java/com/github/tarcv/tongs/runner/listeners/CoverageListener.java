@@ -11,6 +11,7 @@
 
 package com.github.tarcv.tongs.runner.listeners;
 
+import com.android.ddmlib.IDevice;
 import com.android.ddmlib.testrunner.TestIdentifier;
 import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.result.TestCaseFile;
@@ -54,11 +55,19 @@ public class CoverageListener implements RunListener {
         final String remoteFile = RemoteFileManager.getCoverageFileName(testIdentifier);
         final File file = coverageFile.toFile();
         file.getParentFile().mkdirs();
-        try {
-            device.getDeviceInterface().pullFile(remoteFile, file.getAbsolutePath());
-        } catch (Exception e) {
-            logger.error("Something went wrong while pulling coverage file", e);
-        }
+
+        // The file is moved aside and pulled while the device already runs next tests
+        final IDevice deviceInterface = device.getDeviceInterface();
+        final String pulledRemoteFile = RemoteFileManager.remoteCoverageForPull();
+        RemoteFileManager.moveRemotePath(deviceInterface, remoteFile, pulledRemoteFile);
+        device.getArtifacts().submit("pull the coverage file", () -> {
+            try {
+                deviceInterface.pullFile(pulledRemoteFile, file.getAbsolutePath());
+            } catch (Exception e) {
+                logger.error("Something went wrong while pulling coverage file", e);
+            }
+            RemoteFileManager.removeRemotePath(deviceInterface, pulledRemoteFile);
+        });
     }
 
     @Override
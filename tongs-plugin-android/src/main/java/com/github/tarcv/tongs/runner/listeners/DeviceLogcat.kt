@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.NullOutputReceiver
+import com.android.ddmlib.logcat.LogCatListener
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.ddmlib.logcat.LogCatReceiverTask
+import com.github.tarcv.tongs.model.AndroidDevice
+import org.slf4j.LoggerFactory
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArrayList
+import javax.annotation.concurrent.GuardedBy
+
+/**
+ * One logcat stream per device that is kept running between test cases. Consumers receive messages
+ * as they arrive with [addListener], messages are not kept by the stream itself.
+ */
+class DeviceLogcat(
+        private val device: AndroidDevice
+) {
+    private val lock = Object()
+
+    /**
+     * Markers written by [sync] that were not received yet, a marker is removed once it is received
+     */
+    @GuardedBy("lock") private val awaitedSyncTokens = HashSet<String>()
+    @GuardedBy("lock") private var receiverTask: LogCatReceiverTask? = null
+    @GuardedBy("lock") private var receiverThread: Thread? = null
+
+    private val listener = LogCatListener { messages -> append(messages) }
+    private val consumers = CopyOnWriteArrayList<LogCatListener>()
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(DeviceLogcat::class.java)
+
+        const val syncTag = "Tongs.LogcatSync"
+        private const val syncTimeoutMillis = 2500L
+    }
+
+    /**
+     * Starts the stream unless it is already running, e.g. after `adb logcat` was killed together with the connection
+     */
+    fun start() {
+        val isStarted = synchronized(lock) {
+            if (receiverThread?.isAlive == true) {
+                return@synchronized false
+            }
+
+            val task = LogCatReceiverTask(device.deviceInterface)
+            task.addLogCatListener(listener)
+            receiverTask = task
+            receiverThread = Thread(task, "CatLogger-" + device.serial)
+                    .apply {
+                        isDaemon = true
+                        start()
+                    }
+            true
+        }
+        if (isStarted) {
+            // A new logcat process dumps old messages first, they should not get into the next slice
+            sync()
+        }
+    }
+
+    fun stop() {
+        synchronized(lock) {
+            receiverTask?.let {
+                it.stop()
+                it.removeLogCatListener(listener)
+            }
+            receiverTask = null
+            receiverThread = null
+        }
+    }
+
+    /**
+     * [listener] is called on the receiving thread with messages received after this call
+     */
+    fun addListener(listener: LogCatListener) {
+        consumers.add(listener)
+    }
+
+    fun removeListener(listener: LogCatListener) {
+        consumers.remove(listener)
+    }
+
+    /**
+     * Waits until messages logged on the device before this call are received
+     * @return false when the messages were not received in time
+     */
+    fun sync(): Boolean {
+        val token = UUID.randomUUID().toString()
+        synchronized(lock) {
+            awaitedSyncTokens.add(token)
+        }
+        try {
+            try {
+                device.deviceInterface.executeShellCommand("log -t $syncTag $token", NullOutputReceiver())
+            } catch (e: Exception) {
+                logger.warn("Failed to write a logcat marker on {}", device.serial, e)
+                return false
+            }
+
+            val deadline = System.currentTimeMillis() + syncTimeoutMillis
+            synchronized(lock) {
+                while (token in awaitedSyncTokens) {
+                    val timeLeft = deadline - System.currentTimeMillis()
+                    if (timeLeft <= 0) {
+                        logger.warn("Logcat of {} was not received in time, some messages may be missing",
+                                device.serial)
+                        return false
+                    }
+                    lock.wait(timeLeft)
+                }
+                return true
+            }
+        } finally {
+            synchronized(lock) {
+                awaitedSyncTokens.remove(token)
+            }
+        }
+    }
+
+    private fun append(messages: List<LogCatMessage>) {
+        // Listeners are called first, so that they have processed all messages up to a marker once [sync] returns
+        consumers.forEach {
+            try {
+                it.log(messages)
+            } catch (e: Exception) {
+                logger.warn("Failed to process logcat messages of {}", device.serial, e)
+            }
+        }
+        val receivedTokens = messages
+                .filter { it.header.tag == syncTag }
+                .map { it.message }
+        if (receivedTokens.isNotEmpty()) {
+            synchronized(lock) {
+                if (awaitedSyncTokens.removeAll(receivedTokens)) {
+                    lock.notifyAll()
+                }
+            }
+        }
+    }
+}
@@ -26,6 +26,8 @@ class LogCatSerializer {
 	private final Pattern testStartPattern;
 	private final Pattern testEndPattern;
 	private final LogCatWriter logCatWriter;
+	private boolean isWriting = false;
+	private boolean hasFinished = false;
 
 	LogCatSerializer(TestIdentifier test, LogCatWriter logCatWriter) {
 		this.logCatWriter = logCatWriter;
@@ -33,24 +35,35 @@ class LogCatSerializer {
 		testEndPattern = Pattern.compile(createPattern("finished", test));
 	}
 
+	/**
+	 * Can be called several times with consecutive parts of the log
+	 */
 	public void serializeLogs(List<LogCatMessage> logCatMessages) {
 		List<LogCatMessage> filterLogCatMessages = filterLogCatMessages(logCatMessages);
 		logCatWriter.writeLogs(filterLogCatMessages);
 	}
 
+	public void close() {
+		logCatWriter.close();
+	}
+
     //TODO No need to start and stop writing, we could just get index for start & stop and get inline sublist (no new list)
 	private List<LogCatMessage> filterLogCatMessages(List<LogCatMessage> logCatMessages) {
-		boolean isWriting = false;
 		List<LogCatMessage> filteredLogCatMessages = new ArrayList<>();
 		for (LogCatMessage logCatMessage : logCatMessages) {
+			// A retry of the same test might already be running on the device, its logs belong to another attempt
+			if (hasFinished) {
+				break;
+			}
 			if (testStartPattern.matcher(logCatMessage.getMessage()).find()) {
 				isWriting = true;
 			}
 			if (isWriting) {
 				filteredLogCatMessages.add(logCatMessage);
 			}
-			if (testEndPattern.matcher(logCatMessage.getMessage()).find()) {
+			if (isWriting && testEndPattern.matcher(logCatMessage.getMessage()).find()) {
 				isWriting = false;
+				hasFinished = true;
 			}
 		}
 		return filteredLogCatMessages;
@@ -13,8 +13,8 @@
  */
 package com.github.tarcv.tongs.runner.listeners;
 
-import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.ddmlib.testrunner.TestIdentifier;
+import com.github.tarcv.tongs.api.TongsConfiguration;
 import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.result.TestCaseFile;
 import com.github.tarcv.tongs.api.result.TestCaseFileManager;
@@ -24,62 +24,59 @@ import com.github.tarcv.tongs.model.AndroidDevice;
 import com.google.gson.Gson;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.JSON_LOG;
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.RAW_LOG;
 
 class LogCatTestRunListener implements RunListener {
-	private final LogcatReceiver logcatReceiver;
-    private final TestCaseFileManager fileManager;
-    private final Pool pool;
 	private final AndroidDevice device;
-    private final Gson gson;
-    private final List<LogCatMessage> messages = Collections.synchronizedList(new ArrayList<LogCatMessage>());
+	private final LogcatReceiver logcatReceiver;
+	private final LogCatSerializer logCatSerializer;
 
 	private final TestCaseFile tableFile;
 	private final TestCaseFile rawFile;
-	private final TestCase testCase;
 
 	public LogCatTestRunListener(Gson gson,
+								 TongsConfiguration configuration,
 								 TestCaseFileManager fileManager,
 								 Pool pool,
 								 AndroidDevice device,
 								 TestCase testCase
 	) {
-		this.logcatReceiver = new LogcatReceiver(device);
-		this.gson = gson;
-		this.fileManager = fileManager;
-		this.pool = pool;
 		this.device = device;
-		this.testCase = testCase;
 		this.tableFile = new TestCaseFile(fileManager, JSON_LOG, "");
 		this.rawFile = new TestCaseFile(fileManager, RAW_LOG, "");
+
+		LogCatWriter logCatWriter = new CompositeLogCatWriter(
+				new TableLogCatWriter(gson, tableFile),
+				new RawLogCatWriter(fileManager, pool, device, rawFile));
+		TestIdentifier test = new TestIdentifier(testCase.getTestClass(), testCase.getTestMethod());
+		this.logCatSerializer = new LogCatSerializer(test, logCatWriter);
+
+		// Messages go to the log files as they arrive, so nothing is left to write when the test case ends
+		this.logcatReceiver = new LogcatReceiver(
+				device,
+				LogcatFilter.fromConfiguration(configuration),
+				logCatSerializer::serializeLogs,
+				configuration.getLogcatMemoryLimit());
 	}
 
 	@Override
 	public void onRunStarted() {
-		logcatReceiver.start(testCase.toString());
+		logcatReceiver.start();
 	}
 
 	@Override
 	public void onRunFinished() {
-		List<LogCatMessage> copyOfLogCatMessages = logcatReceiver.getMessages();
-		synchronized (messages) {
-			messages.clear();
-			messages.addAll(copyOfLogCatMessages);
-		}
-		LogCatWriter logCatWriter = new CompositeLogCatWriter(
-				new TableLogCatWriter(gson, tableFile),
-				new RawLogCatWriter(fileManager, pool, device, rawFile));
-		TestIdentifier test = new TestIdentifier(testCase.getTestClass(), testCase.getTestMethod());
-		LogCatSerializer logCatSerializer = new LogCatSerializer(test, logCatWriter);
-		logCatSerializer.serializeLogs(copyOfLogCatMessages);
-
-		logcatReceiver.stop();
+		// Messages of next tests don't get into the files, so the device doesn't have to wait for the end of the log
+		device.getArtifacts().submit("write the logcat", () -> {
+			try {
+				logcatReceiver.stop();
+			} finally {
+				logCatSerializer.close();
+			}
+		});
 	}
 
 	public TestCaseFile getTableFile() {
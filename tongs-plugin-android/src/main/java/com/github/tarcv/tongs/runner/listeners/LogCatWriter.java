@@ -19,5 +19,14 @@ import java.util.List;
 
 interface LogCatWriter {
 
+	/**
+	 * Can be called several times, each time with messages that follow the previously written ones
+	 */
 	void writeLogs(List<LogCatMessage> logCatMessages);
+
+	/**
+	 * Called once all messages are written
+	 */
+	default void close() {
+	}
 }
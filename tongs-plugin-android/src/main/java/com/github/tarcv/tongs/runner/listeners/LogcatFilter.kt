@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.Log.LogLevel
+import com.android.ddmlib.logcat.LogCatMessage
+import com.github.tarcv.tongs.api.TongsConfiguration
+
+/**
+ * Decides which logcat messages are captured. Test start and end markers are always captured,
+ * as logs are split into test cases by them.
+ *
+ * @param includedTags when not null, only messages with these tags are captured
+ */
+class LogcatFilter(
+        private val minLevel: LogLevel?,
+        private val excludedTags: Set<String>,
+        private val includedTags: Set<String>? = null
+) {
+    fun accepts(message: LogCatMessage): Boolean {
+        val tag = message.header.tag
+        return when {
+            tag == DeviceLogcat.syncTag -> false
+            tag == testRunnerTag -> true
+            includedTags != null && tag !in includedTags -> false
+            tag in excludedTags -> false
+            minLevel != null && message.header.logLevel.priority < minLevel.priority -> false
+            else -> true
+        }
+    }
+
+    companion object {
+        private const val testRunnerTag = "TestRunner"
+
+        @JvmField
+        val ALL = LogcatFilter(null, emptySet())
+
+        @JvmStatic
+        fun isKnownLevel(levelName: String): Boolean = levelOf(levelName) != null
+
+        @JvmStatic
+        fun fromConfiguration(configuration: TongsConfiguration): LogcatFilter {
+            // Levels are validated when the configuration is built
+            val minLevel = configuration.logcatMinLevel?.let { levelName ->
+                levelOf(levelName) ?: throw IllegalArgumentException("Unknown logcat level '$levelName'")
+            }
+            return LogcatFilter(minLevel, configuration.logcatExcludedTags.toSet())
+        }
+
+        private fun levelOf(levelName: String): LogLevel? = LogLevel.getByString(levelName.toLowerCase())
+    }
+}
@@ -13,47 +13,126 @@ package com.github.tarcv.tongs.runner.listeners
 
 import com.android.ddmlib.logcat.LogCatListener
 import com.android.ddmlib.logcat.LogCatMessage
-import com.android.ddmlib.logcat.LogCatReceiverTask
 import com.github.tarcv.tongs.model.AndroidDevice
-import java.util.*
-import kotlin.collections.ArrayList
+import javax.annotation.concurrent.GuardedBy
 
-class LogcatReceiver(
-        private val device: AndroidDevice
+/**
+ * Captures messages of the device logcat stream (see [DeviceLogcat]) between [start] and [stop].
+ *
+ * With a [sink] messages are queued and written to the sink by the artifact pipeline of the device
+ * (see [AndroidDevice.getArtifacts]), so that file writes don't hold up the receiving thread, which is shared
+ * by all receivers of the device. Once [memoryLimit] messages are queued, e.g. when the pipeline is busy with
+ * other artifacts, the receiving thread writes them itself, so the queue doesn't grow further.
+ * Without a sink messages are collected into [messages].
+ */
+class LogcatReceiver @JvmOverloads constructor(
+        private val device: AndroidDevice,
+        private val filter: LogcatFilter = LogcatFilter.ALL,
+        private val sink: LogCatWriter? = null,
+        private val memoryLimit: Int = Int.MAX_VALUE
 ) {
-    private val logCatReceiverTask = LogCatReceiverTask(device.deviceInterface)
-    private val logCatMessages = Collections.synchronizedList(ArrayList<LogCatMessage>())
-    private val logCatListener = MessageCollectingLogCatListener(logCatMessages)
+    private val lock = Any()
+    @GuardedBy("lock") private val buffer = ArrayList<LogCatMessage>()
+    @GuardedBy("lock") private var isCapturing = false
 
-    val messages: List<LogCatMessage>
-        get() {
-            return synchronized(logCatMessages) {
-                val size = logCatMessages.size
-                val copyOfLogCatMessages: MutableList<LogCatMessage> = ArrayList(size)
-                copyOfLogCatMessages.addAll(logCatMessages)
+    /**
+     * True while a job writing [buffer] to [sink] is scheduled or running
+     */
+    @GuardedBy("lock") private var isWriteScheduled = false
 
-                copyOfLogCatMessages
-            }
+    // Keeps writes to the sink in order when stop() writes the rest of messages while a scheduled job runs
+    private val sinkLock = Any()
+
+    private val listener = LogCatListener { messages -> onMessages(messages) }
+
+    /**
+     * Messages captured so far, always empty when there is a [sink]
+     */
+    val messages: List<LogCatMessage>
+        get() = synchronized(lock) {
+            if (sink != null) emptyList() else ArrayList(buffer)
         }
 
-    fun start(runName: String) {
-        logCatReceiverTask.addLogCatListener(logCatListener)
-        Thread(logCatReceiverTask, "CatLogger-" + runName + "-" + device.serial).start()
+    fun start() {
+        device.logcat.start()
+        synchronized(lock) {
+            isCapturing = true
+        }
+        device.logcat.addListener(listener)
     }
 
+    /**
+     * Waits for messages that were logged before this call, so that the end of the log is not lost.
+     * [sink] is not called anymore after this method returns.
+     */
     fun stop() {
-        logCatReceiverTask.stop()
-        logCatReceiverTask.removeLogCatListener(logCatListener)
+        if (synchronized(lock) { !isCapturing }) {
+            return
+        }
+        device.logcat.sync()
+        device.logcat.removeListener(listener)
+        synchronized(lock) {
+            isCapturing = false
+        }
+        if (sink != null) {
+            writeQueued()
+        }
     }
-}
 
-private class MessageCollectingLogCatListener(
-        private val logCatMessages: MutableList<LogCatMessage>
-) : LogCatListener {
+    private fun onMessages(received: List<LogCatMessage>) {
+        val write = synchronized(lock) {
+            if (!isCapturing) {
+                return
+            }
+            val accepted = received.filter { filter.accepts(it) }
+            buffer.addAll(accepted)
+            when {
+                sink == null || buffer.isEmpty() -> Write.NONE
+                buffer.size >= memoryLimit -> Write.NOW
+                isWriteScheduled -> Write.NONE
+                else -> {
+                    isWriteScheduled = true
+                    Write.SCHEDULED
+                }
+            }
+        }
+        when (write) {
+            Write.NOW -> writeQueued()
+            Write.SCHEDULED -> device.artifacts.submit("write logcat messages") { writeQueued() }
+            Write.NONE -> Unit
+        }
+    }
 
-    override fun log(msgList: List<LogCatMessage>) {
-        synchronized(logCatMessages) {
-            logCatMessages.addAll(msgList)
+    private fun writeQueued() {
+        synchronized(sinkLock) {
+            try {
+                while (true) {
+                    val queued = synchronized(lock) {
+                        if (buffer.isEmpty()) {
+                            isWriteScheduled = false
+                            return
+                        }
+                        ArrayList(buffer).also { buffer.clear() }
+                    }
+                    sink!!.writeLogs(queued)
+                }
+            } catch (e: Exception) {
+                // Let the next messages schedule another write
+                synchronized(lock) {
+                    isWriteScheduled = false
+                }
+                throw e
+            }
         }
     }
-}
\ No newline at end of file
+}
+
+private enum class Write {
+    NONE,
+    SCHEDULED,
+
+    /**
+     * Too many messages are queued to wait for a scheduled write
+     */
+    NOW
+}
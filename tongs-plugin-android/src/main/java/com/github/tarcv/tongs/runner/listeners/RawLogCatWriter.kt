@@ -19,6 +19,7 @@ import com.github.tarcv.tongs.api.devices.Pool
 import com.github.tarcv.tongs.api.result.TestCaseFile
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
 import org.apache.commons.io.IOUtils
+import java.io.Writer
 
 internal class RawLogCatWriter(
         private val fileManager: TestCaseFileManager,
@@ -26,15 +27,24 @@ internal class RawLogCatWriter(
         private val device: Device,
         private val file: TestCaseFile
 ) : LogCatWriter {
+    private var fileWriter: Writer? = null
+
     override fun writeLogs(logCatMessages: List<LogCatMessage>) {
-        file.create()
-                .bufferedWriter(Charsets.UTF_8)
-                .use { fileWriter ->
-                    for (logCatMessage in logCatMessages) {
-                        IOUtils.write(logCatMessage.toString(), fileWriter)
-                        IOUtils.write("\n", fileWriter)
-                    }
-                }
+        val fileWriter = openWriter()
+        for (logCatMessage in logCatMessages) {
+            IOUtils.write(logCatMessage.toString(), fileWriter)
+            IOUtils.write("\n", fileWriter)
+        }
+    }
+
+    override fun close() {
+        openWriter().close()
     }
 
-}
\ No newline at end of file
+    private fun openWriter(): Writer {
+        return fileWriter
+                ?: file.create()
+                        .bufferedWriter(Charsets.UTF_8)
+                        .also { fileWriter = it }
+    }
+}
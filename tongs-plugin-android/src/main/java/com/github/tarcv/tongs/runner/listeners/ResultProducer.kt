@@ -78,7 +78,7 @@ class ResultProducer(
     private val androidDevice = context.device
     private val resultListener = ResultListener(context.testCaseEvent.testCase.toString())
     private val logCatListener = LogCatTestRunListener(
-        gson(), context.fileManager, context.pool, androidDevice,
+        gson(), context.configuration, context.fileManager, context.pool, androidDevice,
         context.testCaseEvent.testCase
     )
     private val screenTraceListener =
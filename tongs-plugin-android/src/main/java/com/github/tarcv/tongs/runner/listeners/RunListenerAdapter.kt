@@ -18,10 +18,18 @@ import javax.annotation.concurrent.GuardedBy
 import javax.annotation.concurrent.ThreadSafe
 import kotlin.concurrent.withLock
 
+/**
+ * Passes events of [expectedTest] to [listeners].
+ *
+ * When [isBucketMember] is true, the instrumentation run contains other tests that have their own adapters,
+ * so the listeners see a run that starts with [expectedTest] and finishes right after it.
+ */
 @ThreadSafe
 class RunListenerAdapter(private val runName: String,
                          private val expectedTest: TestIdentifier,
-                         private val listeners: List<RunListener>) : ITestRunListener, FullTestRunListener {
+                         private val listeners: List<RunListener>,
+                         private val isBucketMember: Boolean = false
+) : ITestRunListener, FullTestRunListener {
 
     private val lock = ReentrantLock()
 
@@ -41,13 +49,20 @@ class RunListenerAdapter(private val runName: String,
     private var gotExpectedTestResult = false
         get() = assertSynchronized(field)
 
+    @GuardedBy("lock")
+    private var listenersStarted = !isBucketMember
+        get() = assertSynchronized(field)
+
     private inline fun <T>assertSynchronized(field: T): T {
         assert(lock.isHeldByCurrentThread)
         return field
     }
 
+    fun hasExpectedTestResult(): Boolean = lock.withLock { gotExpectedTestResult }
+
     fun onBeforeTestRunStarted() {
         lock.withLock {
+            if (isBucketMember) return
             if (!checkRunActive()) return
 
             fireEvent(RunListener::onRunStarted)
@@ -89,7 +104,8 @@ class RunListenerAdapter(private val runName: String,
         lock.withLock {
             if (!checkRunActive()) return
 
-            if (!gotExpectedTestResult) {
+            if (!gotExpectedTestResult && !isBucketMember) {
+                // A bucket member without a result is executed again in a separate run
                 testRunFailed("No expected tests were found")
             }
             fireEvent(RunListener::onRunFinished)
@@ -121,6 +137,7 @@ class RunListenerAdapter(private val runName: String,
     @GuardedBy("lock")
     private inline fun fireEvent(block: (RunListener) -> Unit) {
         if (!checkRunActive()) return
+        if (!listenersStarted) return
 
         listeners.forEach {
             try {
@@ -134,12 +151,21 @@ class RunListenerAdapter(private val runName: String,
     @GuardedBy("lock")
     private fun checkRunActive(): Boolean {
         if (!instrumentationRunActive) {
-            logger.warn("Got instrumentation run event after the run was finished")
+            if (!isBucketMember) {
+                // Bucket members finish right after the expected test while the rest of the run continues
+                logger.warn("Got instrumentation run event after the run was finished")
+            }
             return false
         }
         return true
     }
 
+    @GuardedBy("lock")
+    private fun finishBucketMember() {
+        fireEvent(RunListener::onRunFinished)
+        instrumentationRunActive = false
+    }
+
     private fun handleTestEvent(newEvent: TestEvent) {
         lock.withLock {
             if (!checkRunActive()) return
@@ -173,6 +199,10 @@ class RunListenerAdapter(private val runName: String,
                         if (state != TestState.BEFORE_START) {
                             handleUnexpectedTest(event)
                         }
+                        if (!listenersStarted) {
+                            listenersStarted = true
+                            fireEvent(RunListener::onRunStarted)
+                        }
                         TestState.TEST_STARTED
                     }
                     is TestEvent.TestFailed -> {
@@ -207,6 +237,9 @@ class RunListenerAdapter(private val runName: String,
                         fireEvent {
                             it.addTestMetrics(event.testIdentifier, event.testMetrics, gotStart)
                         }
+                        if (isBucketMember && gotExpectedTestResult) {
+                            finishBucketMember()
+                        }
 
                         TestState.BEFORE_START
                     }
@@ -21,12 +21,14 @@ import java.util.Map;
 
 class ScreenCaptureTestRunListener extends BaseCaptureTestRunListener {
     private final TestCaseFileManager fileManager;
+    private final AndroidDevice device;
     private final IDevice deviceInterface;
 
     private ScreenCapturer screenCapturer;
 
     public ScreenCaptureTestRunListener(TestCaseFileManager fileManager, AndroidDevice device) {
         this.fileManager = fileManager;
+        this.device = device;
         this.deviceInterface = device.getDeviceInterface();
     }
 
@@ -39,6 +41,16 @@ class ScreenCaptureTestRunListener extends BaseCaptureTestRunListener {
     @Override
     public void onRunFinished() {
         screenCapturer.stopCapturing(isHasFailed());
+
+        // The animation is encoded while the device already runs next tests
+        ScreenCapturer finishedCapturer = screenCapturer;
+        device.getArtifacts().submit("encode the animation", () -> {
+            try {
+                finishedCapturer.collectAnimation();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
     }
 
     @NotNull
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.ANIMATION;
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.SCREENSHOT;
@@ -41,10 +42,10 @@ class ScreenCapturer implements Runnable {
     private final IDevice deviceInterface;
     private final TestCaseFileManager fileManager;
 
-    private final Object lock = new Object();
     private final List<File> files = new ArrayList<>();
-    private boolean capturing;
-    private boolean hasFailed;
+    private final CountDownLatch capturingFinished = new CountDownLatch(1);
+    private volatile boolean capturing = true;
+    private volatile boolean hasFailed;
     private final TestCaseFile animationFile;
 
     ScreenCapturer(IDevice deviceInterface, TestCaseFileManager fileManager) {
@@ -55,27 +56,33 @@ class ScreenCapturer implements Runnable {
 
     @Override
     public void run() {
-        Thread currentThread = Thread.currentThread();
-        synchronized (lock) {
-            try {
-                int count = 0;
-                capturing = true;
-                while (capturing) {
-                    getScreenshot(count++);
-                    pauseTillNextScreenCapture();
-                }
+        try {
+            int count = 0;
+            while (capturing) {
+                getScreenshot(count++);
+                pauseTillNextScreenCapture();
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Screenshot capturer thread was interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            capturingFinished.countDown();
+        }
+    }
 
-                if (hasFailed) {
-                    File file = animationFile.create();
-                    createGif(files, file);
-                }
-            } catch (InterruptedException e) {
-                logger.warn("Screenshot capturer thread was interrupted", e);
-                currentThread.interrupt();
-            } finally {
-                deleteFiles(files);
-                files.clear();
+    /**
+     * Waits for the capturing to stop, then encodes the animation when the test has failed and removes screenshots
+     */
+    public void collectAnimation() throws InterruptedException {
+        capturingFinished.await();
+        try {
+            if (hasFailed) {
+                File file = animationFile.create();
+                createGif(files, file);
             }
+        } finally {
+            deleteFiles(files);
+            files.clear();
         }
     }
 
@@ -98,10 +105,8 @@ class ScreenCapturer implements Runnable {
     }
 
     public void stopCapturing(boolean hasFailed) {
-        synchronized (lock) {
-            this.hasFailed = hasFailed;
-            capturing = false;
-        }
+        this.hasFailed = hasFailed;
+        capturing = false;
     }
 
     private static BufferedImage bufferedImageFrom(RawImage rawImage) {
@@ -18,6 +18,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
 
 import static com.github.tarcv.tongs.system.io.RemoteFileManager.remoteVideoForTest;
 import static com.github.tarcv.tongs.system.io.RemoteFileManager.removeRemotePath;
@@ -37,6 +38,7 @@ class ScreenRecorder implements Runnable {
     private final File localVideoFile;
     private final IDevice deviceInterface;
     private final ScreenRecorderStopper screenRecorderStopper;
+    private final CountDownLatch recordingFinished = new CountDownLatch(1);
 
     public ScreenRecorder(ScreenRecorderStopper screenRecorderStopper, File localVideoFile,
                           IDevice deviceInterface) {
@@ -50,12 +52,25 @@ class ScreenRecorder implements Runnable {
     public void run() {
         try {
             startRecordingTestVideo();
+        } catch (Exception e) {
+            logger.error("Something went wrong while screen recording", e);
+        } finally {
+            recordingFinished.countDown();
+        }
+    }
+
+    /**
+     * Waits for the recording to stop, then pulls the video when the test has failed and removes it from the device
+     */
+    public void collectVideo() throws InterruptedException {
+        recordingFinished.await();
+        try {
             if (screenRecorderStopper.hasFailed()) {
                 pullTestVideo();
             }
             removeTestVideo();
         } catch (Exception e) {
-            logger.error("Something went wrong while screen recording", e);
+            logger.error("Something went wrong while pulling the screen recording", e);
         }
     }
 
@@ -23,14 +23,17 @@ import java.util.Map;
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.SCREENRECORD;
 
 class ScreenRecorderTestRunListener extends BaseCaptureTestRunListener {
+    private final AndroidDevice device;
     private final IDevice deviceInterface;
 
     private final ScreenRecorderStopper screenRecorderStopper;
+    private ScreenRecorder screenRecorder;
 
     @NotNull
     public final TestCaseFile file;
 
     public ScreenRecorderTestRunListener(TestCaseFileManager fileManager, AndroidDevice device) {
+        this.device = device;
         deviceInterface = device.getDeviceInterface();
         screenRecorderStopper = new ScreenRecorderStopper(deviceInterface);
         file = new TestCaseFile(fileManager, SCREENRECORD, "");
@@ -44,13 +47,25 @@ class ScreenRecorderTestRunListener extends BaseCaptureTestRunListener {
     @Override
     public void onRunStarted() {
         File localVideoFile = file.toFile();
-        ScreenRecorder screenRecorder = new ScreenRecorder(screenRecorderStopper, localVideoFile, deviceInterface);
+        screenRecorder = new ScreenRecorder(screenRecorderStopper, localVideoFile, deviceInterface);
         new Thread(screenRecorder, "ScreenRecorder").start();
     }
 
     @Override
     public void onRunFinished() {
         screenRecorderStopper.stopScreenRecord(isHasFailed());
+
+        // The video is pulled while the device already runs next tests
+        ScreenRecorder finishedRecorder = screenRecorder;
+        if (finishedRecorder != null) {
+            device.getArtifacts().submit("pull the video", () -> {
+                try {
+                    finishedRecorder.collectVideo();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
     }
 
     @Override
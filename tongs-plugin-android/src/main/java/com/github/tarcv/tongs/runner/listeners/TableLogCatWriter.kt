@@ -17,26 +17,66 @@ import com.android.ddmlib.logcat.LogCatMessage
 import com.github.tarcv.tongs.api.result.Table
 import com.github.tarcv.tongs.api.result.TestCaseFile
 import com.google.gson.Gson
-import java.util.function.Function
-import java.util.stream.Collectors
+import com.google.gson.stream.JsonWriter
 
+/**
+ * Writes rows to the file as they come, the file has the same structure as [Table.TableJson]
+ */
 class TableLogCatWriter(
         private val gson: Gson,
         private val file: TestCaseFile
 ) : LogCatWriter {
+    private var jsonWriter: JsonWriter? = null
+
     override fun writeLogs(logCatMessages: List<LogCatMessage>) {
-        convertToTable(logCatMessages)
-                .writeToFile(file) { outputFile, tableJson ->
-                    outputFile
-                            .bufferedWriter(Charsets.UTF_8)
-                            .use { writer ->
-                                gson.toJson(tableJson, writer)
-                            }
+        val jsonWriter = openWriter()
+        for (logCatMessage in logCatMessages) {
+            jsonWriter.beginArray()
+            toRow(logCatMessage).forEach { jsonWriter.value(it) }
+            jsonWriter.endArray()
+        }
+    }
+
+    override fun close() {
+        openWriter()
+                .apply {
+                    endArray()
+                    endObject()
                 }
+                .close()
+    }
+
+    private fun openWriter(): JsonWriter {
+        return jsonWriter
+                ?: gson.newJsonWriter(file.create().bufferedWriter(Charsets.UTF_8))
+                        .apply {
+                            beginObject()
+                            name("headers")
+                            beginArray()
+                            headers.forEach { value(it) }
+                            endArray()
+                            name("rows")
+                            beginArray()
+                        }
+                        .also { jsonWriter = it }
     }
 
     fun convertToTable(messages: List<LogCatMessage>): Table {
-        val headers = listOf("appName",
+        val rows: List<List<String>> = messages.map { toRow(it) }
+        return Table(headers, rows)
+    }
+
+    private fun toRow(logCatMessage: LogCatMessage): List<String> {
+        return listOf(logCatMessage.header.appName,
+                logCatMessage.header.logLevel.stringValue,
+                logCatMessage.message, logCatMessage.header.pid.toString(),
+                logCatMessage.header.tag, logCatMessage.header.tid.toString(),
+                logCatMessage.header.timestamp.toString()
+        )
+    }
+
+    companion object {
+        private val headers = listOf("appName",
                 "logLevel",
                 "message",
                 "pid",
@@ -44,16 +84,5 @@ class TableLogCatWriter(
                 "tid",
                 "time"
         )
-        val rows: List<List<String>> = messages.stream()
-                .map(Function { logCatMessage: LogCatMessage ->
-                    listOf(logCatMessage.header.appName,
-                            logCatMessage.header.logLevel.stringValue,
-                            logCatMessage.message, logCatMessage.header.pid.toString(),
-                            logCatMessage.header.tag, logCatMessage.header.tid.toString(),
-                            logCatMessage.header.timestamp.toString()
-                    )
-                })
-                .collect(Collectors.toList<List<String>>())
-        return Table(headers, rows)
     }
-}
\ No newline at end of file
+}
@@ -17,18 +17,17 @@ import com.github.tarcv.tongs.api.testcases.NoTestCasesFoundException
 import com.github.tarcv.tongs.api.testcases.TestCase
 import com.github.tarcv.tongs.api.testcases.TestCaseProvider
 import com.github.tarcv.tongs.api.testcases.TestCaseProviderContext
-import com.github.tarcv.tongs.device.clearLogcat
 import com.github.tarcv.tongs.model.AndroidDevice
 import com.github.tarcv.tongs.runner.AndroidTestRunFactory
 import com.github.tarcv.tongs.runner.JsonInfoDecorder
 import com.github.tarcv.tongs.runner.TestInfo
+import com.github.tarcv.tongs.runner.listeners.LogcatFilter
 import com.github.tarcv.tongs.runner.listeners.LogcatReceiver
 import com.google.gson.JsonObject
 import com.google.gson.JsonParser.parseString
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import org.slf4j.LoggerFactory
@@ -43,8 +42,8 @@ class JUnitTestCaseProvider(
     private val logger = LoggerFactory.getLogger(JUnitTestCaseProvider::class.java)
 
     companion object {
-        const val logcatWaiterSleep: Long = 2500
         private val jsonInfoDecoder = JsonInfoDecorder()
+        private const val testInfoTag = "Tongs.TestInfo"
 
         fun calculateDeviceIncludes(input: Sequence<Pair<AndroidDevice, Set<TestIdentifier>>>)
                 : Map<TestIdentifier, List<AndroidDevice>> {
@@ -310,25 +309,21 @@ class JUnitTestCaseProvider(
         withOnDeviceLib: Boolean
     ): Pair<List<LogCatMessage>, TestCollectingListener.Result> = withContext(Dispatchers.IO) {
         val testCollectingListener = TestCollectingListener()
-        val logCatCollector = LogcatReceiver(device)
+        val logCatCollector = LogcatReceiver(device, LogcatFilter(null, emptySet(), setOf(testInfoTag)))
         val testRun = testRunFactory.createCollectingRun(
             device, context.pool, testCollectingListener, withOnDeviceLib
         )
+        logCatCollector.start()
         try {
-            clearLogcat(device.deviceInterface)
-            logCatCollector.start(this@JUnitTestCaseProvider.javaClass.simpleName)
             testRun.execute()
-
-            delay(logcatWaiterSleep) // make sure all logcat messages are read
-            logCatCollector.stop()
-            Pair(
-                logCatCollector.messages
-                    .filter { logCatMessage -> "Tongs.TestInfo" == logCatMessage.header.tag },
-                testCollectingListener.result
-            )
         } finally {
-            logCatCollector.stop()
+            logCatCollector.stop() // waits until all logcat messages are read
         }
+        Pair(
+            logCatCollector.messages
+                .filter { logCatMessage -> testInfoTag == logCatMessage.header.tag },
+            testCollectingListener.result
+        )
     }
 
     internal fun tryCollectingAndDecodingInfos(
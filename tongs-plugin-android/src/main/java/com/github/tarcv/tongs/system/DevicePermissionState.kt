@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.system
+
+import javax.annotation.concurrent.GuardedBy
+
+/**
+ * Permissions that [PermissionGrantingManager] has granted on a device and that are still in effect.
+ * Permissions granted by other means (e.g. during installation) are not tracked, so they are never revoked.
+ *
+ * Permissions required by test cases that are prepared but not finished yet are never revoked. There are several
+ * such test cases when they are executed in one bucket.
+ */
+class DevicePermissionState {
+    private val lock = Any()
+    @GuardedBy("lock") private val granted = HashMap<String, MutableSet<String>>()
+    @GuardedBy("lock") private val inUse = HashMap<String, Int>()
+
+    fun grantedTo(applicationPackage: String): Set<String> = synchronized(lock) {
+        granted[applicationPackage]?.toSet() ?: emptySet()
+    }
+
+    /**
+     * Packages that have at least one permission granted
+     */
+    fun packagesWithGrants(): Set<String> = synchronized(lock) {
+        granted.filterValues { it.isNotEmpty() }.keys.toSet()
+    }
+
+    /**
+     * @return [requiredPermissions] that are not granted yet
+     */
+    fun toGrant(applicationPackage: String, requiredPermissions: Collection<String>): List<String> {
+        val granted = grantedTo(applicationPackage)
+        return requiredPermissions
+                .filter { it !in granted }
+                .distinct()
+    }
+
+    /**
+     * @return granted permissions that are neither among [requiredPermissions] nor in use
+     */
+    fun toRevoke(applicationPackage: String, requiredPermissions: Collection<String>): List<String> {
+        val required = requiredPermissions.toSet()
+        val inUse = synchronized(lock) { inUse.keys.toSet() }
+        return grantedTo(applicationPackage)
+                .filter { it !in required && it !in inUse }
+                .sorted()
+    }
+
+    /**
+     * Called when a test case that requires [permissions] is prepared
+     */
+    fun acquire(permissions: Collection<String>) {
+        synchronized(lock) {
+            permissions.toSet().forEach {
+                inUse.merge(it, 1, Int::plus)
+            }
+        }
+    }
+
+    /**
+     * Called when a test case that required [permissions] is finished
+     */
+    fun release(permissions: Collection<String>) {
+        synchronized(lock) {
+            permissions.toSet().forEach {
+                inUse.computeIfPresent(it) { _, count -> (count - 1).takeIf { it > 0 } }
+            }
+        }
+    }
+
+    fun onGranted(applicationPackage: String, permission: String) {
+        synchronized(lock) {
+            granted.getOrPut(applicationPackage) { HashSet() }.add(permission)
+        }
+    }
+
+    fun onRevoked(applicationPackage: String, permission: String) {
+        synchronized(lock) {
+            granted[applicationPackage]?.remove(permission)
+        }
+    }
+
+    /**
+     * Clearing data of a package also resets its runtime permissions
+     */
+    fun onDataCleared(applicationPackage: String) {
+        synchronized(lock) {
+            granted.remove(applicationPackage)
+        }
+    }
+}
@@ -11,57 +11,77 @@
 
 package com.github.tarcv.tongs.system;
 
-import com.android.ddmlib.*;
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch;
+import kotlin.Unit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.util.List;
+import java.util.Collection;
 
 import static java.lang.String.format;
+import static java.util.Collections.emptyList;
 
+/**
+ * Brings runtime permissions of a package to the required state, changing only permissions
+ * that differ from the state remembered in {@link DevicePermissionState}
+ */
 public class PermissionGrantingManager {
 
-    private static final NullOutputReceiver NO_OP_RECEIVER = new NullOutputReceiver();
-
     private static final Logger logger = LoggerFactory.getLogger(PermissionGrantingManager.class);
 
-    public void revokePermissions(@Nonnull String applicationPackage,
-                                  @Nonnull IDevice device,
-                                  @Nonnull List<String> permissionsToRevoke) {
-        if (!permissionsToRevoke.isEmpty()) {
-            final long start = System.currentTimeMillis();
-            for (String permissionToRevoke : permissionsToRevoke) {
-                try {
-                    device.executeShellCommand(format("pm revoke %s %s",
-                            applicationPackage, permissionToRevoke), NO_OP_RECEIVER);
-                } catch (TimeoutException | AdbCommandRejectedException | ShellCommandUnresponsiveException | IOException e) {
-                    throw new UnsupportedOperationException(format("Unable to revoke permission %s", permissionToRevoke), e);
-                }
+    /**
+     * Queues commands that grant missing permissions and, when {@code revokeOthers} is set, revoke permissions
+     * that were granted for previous test cases but are not required anymore
+     */
+    public void applyPermissions(@Nonnull String applicationPackage,
+                                 @Nonnull DeviceCommandBatch commandBatch,
+                                 @Nonnull DevicePermissionState permissionState,
+                                 @Nonnull Collection<String> requiredPermissions,
+                                 boolean revokeOthers) {
+        if (revokeOthers) {
+            for (String permissionToRevoke : permissionState.toRevoke(applicationPackage, requiredPermissions)) {
+                revoke(applicationPackage, permissionToRevoke, commandBatch, permissionState);
             }
+        }
 
-            logger.debug("Revoking permissions: {} (took {}ms)", permissionsToRevoke, (System.currentTimeMillis() - start));
+        for (String permissionToGrant : permissionState.toGrant(applicationPackage, requiredPermissions)) {
+            String command = format("pm grant %s %s", applicationPackage, permissionToGrant);
+            commandBatch.add(command, result -> {
+                if (result.isSuccessful()) {
+                    permissionState.onGranted(applicationPackage, permissionToGrant);
+                } else {
+                    logger.warn("Failed to grant permission {}: {}", permissionToGrant, result.getOutput());
+                }
+                return Unit.INSTANCE;
+            });
         }
     }
 
-    public void grantPermissions(@Nonnull String applicationPackage,
-                                  @Nonnull IDevice device,
-                                  @Nonnull List<String> permissionsToGrant) {
-        if (!permissionsToGrant.isEmpty()) {
-            final long start = System.currentTimeMillis();
-            for (String permissionToGrant : permissionsToGrant) {
-                try {
-                    String command = format("pm grant %s %s", applicationPackage, permissionToGrant);
-                    logger.info("Cmd: " + command);
-                    device.executeShellCommand(command, NO_OP_RECEIVER);
-                } catch (TimeoutException | AdbCommandRejectedException | ShellCommandUnresponsiveException | IOException e) {
-                    throw new UnsupportedOperationException(format("Unable to grant permission %s", permissionToGrant), e);
-                }
+    /**
+     * Queues commands that revoke all permissions still granted by this manager, e.g. when the device is released
+     */
+    public void revokeAll(@Nonnull DeviceCommandBatch commandBatch, @Nonnull DevicePermissionState permissionState) {
+        for (String applicationPackage : permissionState.packagesWithGrants()) {
+            for (String permissionToRevoke : permissionState.toRevoke(applicationPackage, emptyList())) {
+                revoke(applicationPackage, permissionToRevoke, commandBatch, permissionState);
             }
-
-            logger.debug("Granting permissions: {} (took {}ms)", permissionsToGrant, (System.currentTimeMillis() - start));
         }
     }
 
+    private static void revoke(String applicationPackage,
+                               String permissionToRevoke,
+                               DeviceCommandBatch commandBatch,
+                               DevicePermissionState permissionState) {
+        String command = format("pm revoke %s %s", applicationPackage, permissionToRevoke);
+        commandBatch.add(command, result -> {
+            if (result.isSuccessful()) {
+                permissionState.onRevoked(applicationPackage, permissionToRevoke);
+            } else {
+                logger.warn("Failed to revoke permission {}: {}", permissionToRevoke, result.getOutput());
+            }
+            return Unit.INSTANCE;
+        });
+    }
+
 }
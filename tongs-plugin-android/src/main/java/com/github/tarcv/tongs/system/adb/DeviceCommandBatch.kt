@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.system.adb
+
+import com.android.ddmlib.AdbCommandRejectedException
+import com.android.ddmlib.CollectingOutputReceiver
+import com.android.ddmlib.ShellCommandUnresponsiveException
+import com.android.ddmlib.TimeoutException
+import com.github.tarcv.tongs.model.AndroidDevice
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import javax.annotation.concurrent.GuardedBy
+
+/**
+ * Collects shell commands that prepare a device for a test case, so that they are executed
+ * with one shell invocation instead of opening an ADB connection per command.
+ *
+ * Commands are queued by before() methods of test case run rules and executed in the order they were added
+ * once all before() methods are done. A rule that needs the outcome of a command right away should use [execute].
+ */
+class DeviceCommandBatch(private val device: AndroidDevice) {
+    private val lock = Any()
+    @GuardedBy("lock") private val pending = ArrayList<Step>()
+
+    class StepResult(
+            val command: String,
+
+            /**
+             * Null when the script stopped before reporting the status of this command
+             */
+            val exitCode: Int?,
+            val output: String
+    ) {
+        val isSuccessful: Boolean
+            get() = exitCode == 0
+    }
+
+    internal class Step(
+            val command: String,
+            val onResult: (StepResult) -> Unit
+    )
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(DeviceCommandBatch::class.java)
+
+        internal const val statusMarker = "tongs-step-status:"
+
+        /**
+         * Old ADB versions reject longer shell commands, so longer batches are split into several scripts
+         */
+        internal const val maxScriptLength = 3000
+    }
+
+    /**
+     * Queues [command], [onResult] is called after the command is executed
+     */
+    @JvmOverloads
+    fun add(command: String, onResult: (StepResult) -> Unit = {}) {
+        synchronized(lock) {
+            pending.add(Step(command, onResult))
+        }
+    }
+
+    /**
+     * Executes queued commands followed by [command]
+     * @return the result of [command]
+     */
+    fun execute(command: String): StepResult {
+        var result: StepResult? = null
+        add(command) { result = it }
+        flush()
+        return result!!
+    }
+
+    /**
+     * Executes all queued commands
+     */
+    fun flush() {
+        val steps = synchronized(lock) {
+            ArrayList(pending).also { pending.clear() }
+        }
+        chunked(steps).forEach { chunk ->
+            runScript(chunk)
+                    .zip(chunk)
+                    .forEach { (result, step) -> step.onResult(result) }
+        }
+    }
+
+    /**
+     * Drops queued commands, e.g. when a rule failed before they were executed
+     */
+    fun discardPending() {
+        synchronized(lock) {
+            if (pending.isNotEmpty()) {
+                logger.debug("Discarding {} queued commands", pending.size)
+                pending.clear()
+            }
+        }
+    }
+
+    internal fun chunked(steps: List<Step>): List<List<Step>> {
+        val chunks = ArrayList<List<Step>>()
+        var current = ArrayList<Step>()
+        var currentLength = 0
+        for (step in steps) {
+            val stepLength = scriptPart(step.command, 0).length
+            if (current.isNotEmpty() && currentLength + stepLength > maxScriptLength) {
+                chunks.add(current)
+                current = ArrayList()
+                currentLength = 0
+            }
+            current.add(step)
+            currentLength += stepLength
+        }
+        if (current.isNotEmpty()) {
+            chunks.add(current)
+        }
+        return chunks
+    }
+
+    private fun scriptPart(command: String, index: Int) = "$command; echo \"$statusMarker$index:\$?\"; "
+
+    private fun runScript(steps: List<Step>): List<StepResult> {
+        val script = steps
+                .mapIndexed { index, step -> scriptPart(step.command, index) }
+                .joinToString("")
+        steps.forEach { logger.info("Cmd: ${it.command}") }
+
+        val start = System.currentTimeMillis()
+        val receiver = CollectingOutputReceiver()
+        try {
+            device.deviceInterface.executeShellCommand(script, receiver)
+        } catch (e: TimeoutException) {
+            throw UnsupportedOperationException(describeFailure(steps), e)
+        } catch (e: AdbCommandRejectedException) {
+            throw UnsupportedOperationException(describeFailure(steps), e)
+        } catch (e: ShellCommandUnresponsiveException) {
+            throw UnsupportedOperationException(describeFailure(steps), e)
+        } catch (e: IOException) {
+            throw UnsupportedOperationException(describeFailure(steps), e)
+        }
+        logger.debug("Executing {} commands (took {}ms)", steps.size, System.currentTimeMillis() - start)
+
+        return parseOutput(steps, receiver.output)
+    }
+
+    internal fun parseOutput(steps: List<Step>, output: String): List<StepResult> {
+        val exitCodes = arrayOfNulls<Int>(steps.size)
+        val outputs = Array(steps.size) { StringBuilder() }
+        var currentStep = 0
+        output.lineSequence().forEach { rawLine ->
+            val line = rawLine.trimEnd('\r')
+            val status = line
+                    .takeIf { it.startsWith(statusMarker) }
+                    ?.removePrefix(statusMarker)
+                    ?.split(':', limit = 2)
+            val index = status?.getOrNull(0)?.toIntOrNull()
+            if (index != null && index in steps.indices) {
+                exitCodes[index] = status.getOrNull(1)?.toIntOrNull()
+                currentStep = index + 1
+            } else if (currentStep < steps.size) {
+                outputs[currentStep].append(line).append('\n')
+            }
+        }
+        return steps.mapIndexed { index, step ->
+            StepResult(step.command, exitCodes[index], outputs[index].toString().trimEnd())
+        }
+    }
+
+    private fun describeFailure(steps: List<Step>): String {
+        return "Unable to execute commands: ${steps.joinToString("; ") { it.command }}"
+    }
+}
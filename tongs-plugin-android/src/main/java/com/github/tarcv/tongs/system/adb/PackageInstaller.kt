@@ -12,11 +12,16 @@
  */
 package com.github.tarcv.tongs.system.adb
 
+import com.android.ddmlib.CollectingOutputReceiver
+import com.android.ddmlib.IDevice
 import com.android.ddmlib.InstallException
 import com.github.tarcv.tongs.model.AndroidDevice
 import com.github.tarcv.tongs.util.repeatUntilSuccessful
+import com.google.common.hash.Hashing
 import org.slf4j.LoggerFactory
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import com.google.common.io.Files as GuavaFiles
 
 class PackageInstaller(
     private val appApk: File?,
@@ -26,6 +31,19 @@ class PackageInstaller(
 ) {
     companion object {
         val logger = LoggerFactory.getLogger(PackageInstaller::class.java)
+
+        private const val installMarkersDirectory = "/data/local/tmp/tongs-installed"
+        private val installedFingerprintRegex = Regex("""^\d+ \d+$""")
+
+        // The same APKs are installed to every device, so hash each of them only once
+        private val apkHashes = ConcurrentHashMap<ApkKey, String>()
+
+        private fun apkSha256(apk: File): String {
+            val key = ApkKey(apk.absolutePath, apk.length(), apk.lastModified())
+            return apkHashes.computeIfAbsent(key) {
+                GuavaFiles.asByteSource(apk).hash(Hashing.sha256()).toString()
+            }
+        }
     }
 
     fun resetInstallation(device: AndroidDevice) {
@@ -39,6 +57,13 @@ class PackageInstaller(
 
     private fun doResetInstallation(device: AndroidDevice, apk: File, packageId: String) {
         val deviceInterface = device.deviceInterface
+        val apkHash = apkSha256(apk)
+        if (isInstalledFrom(deviceInterface, packageId, apkHash)) {
+            logger.info("$packageId on ${deviceInterface.name} is already installed from $apk, only clearing its data")
+            executeShellCommand(deviceInterface, "pm clear $packageId")
+            return
+        }
+
         try {
             deviceInterface.uninstallPackage(packageId)
         } catch (e: InstallException) {
@@ -54,5 +79,66 @@ class PackageInstaller(
                 //      marked as test-only ones.
                 deviceInterface.installPackage(apk.absolutePath, true, "-t", "-d")
             }
+
+        writeInstallMarker(deviceInterface, packageId, apkHash)
+    }
+
+    /**
+     * Checks the marker written after the last successful installation. The marker also stores size and modification
+     * time of the installed APK, so a package reinstalled by something else than Tongs is not mistaken for ours.
+     */
+    private fun isInstalledFrom(deviceInterface: IDevice, packageId: String, apkHash: String): Boolean {
+        return try {
+            val fingerprint = installedFingerprint(deviceInterface, packageId) ?: return false
+            val marker = executeShellCommand(deviceInterface, "cat ${installMarkerPath(packageId)}").trim()
+            marker == "$apkHash $fingerprint"
+        } catch (e: Exception) {
+            logger.warn("Failed to check installed version of $packageId on ${deviceInterface.name}", e)
+            false
+        }
+    }
+
+    private fun writeInstallMarker(deviceInterface: IDevice, packageId: String, apkHash: String) {
+        try {
+            val fingerprint = installedFingerprint(deviceInterface, packageId)
+            if (fingerprint == null) {
+                logger.warn("Can't detect installed version of $packageId on ${deviceInterface.name}," +
+                        " it will be reinstalled on every run")
+                return
+            }
+            executeShellCommand(
+                deviceInterface,
+                "mkdir -p $installMarkersDirectory && echo '$apkHash $fingerprint' > ${installMarkerPath(packageId)}"
+            )
+        } catch (e: Exception) {
+            logger.warn("Failed to save installed version of $packageId on ${deviceInterface.name}", e)
+        }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return size and modification time of the installed base APK, or null if the package is not installed
+     */
+    private fun installedFingerprint(deviceInterface: IDevice, packageId: String): String? {
+        val installedPath = executeShellCommand(deviceInterface, "pm path $packageId")
+            .lineSequence()
+            .map { it.trim() }
+            .firstOrNull { it.startsWith("package:") }
+            ?.removePrefix("package:")
+            // some devices output '=com.package.test' at the end of this line:
+            ?.replaceFirst(Regex("""=[\w.]+$"""), "")
+            ?: return null
+        return executeShellCommand(deviceInterface, "stat -c '%s %Y' $installedPath")
+            .trim()
+            .takeIf { installedFingerprintRegex.matches(it) }
+    }
+
+    private fun installMarkerPath(packageId: String) = "$installMarkersDirectory/$packageId"
+
+    private fun executeShellCommand(deviceInterface: IDevice, command: String): String {
+        val receiver = CollectingOutputReceiver()
+        deviceInterface.executeShellCommand(command, receiver)
+        return receiver.output
+    }
+
+    private data class ApkKey(val path: String, val size: Long, val lastModified: Long)
+}
@@ -40,6 +40,11 @@ public class RemoteFileManager {
         return remoteFileForTest("/coverage.ec");
     }
 
+    public static void moveRemotePath(IDevice device, String remotePath, String newRemotePath) {
+        executeCommand(device, "mv " + remotePath + " " + newRemotePath,
+                "Could not move remote file(s): " + remotePath);
+    }
+
     public static void createRemoteDirectory(IDevice device) {
         executeCommand(device, "mkdir " + TONGS_DIRECTORY, "Could not create remote directory: " + TONGS_DIRECTORY);
     }
@@ -64,6 +69,17 @@ public class RemoteFileManager {
         return DdmsUtils.escapeArgumentForCommandLine(remoteFileForTest(filename));
     }
 
+    private static final AtomicInteger coverageIndex = new AtomicInteger();
+    /**
+     * Path where the coverage file of a finished test attempt waits to be pulled, so that the next test
+     * doesn't overwrite it
+     */
+    public static String remoteCoverageForPull() {
+        String filename = String.format("coverage%x.ec", coverageIndex.getAndIncrement());
+
+        return remoteFileForTest(filename);
+    }
+
     private static String remoteFileForTest(String filename) {
         return TONGS_DIRECTORY + "/" + filename;
     }
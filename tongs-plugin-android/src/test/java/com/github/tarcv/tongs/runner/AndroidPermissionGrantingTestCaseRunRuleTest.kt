@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.IShellOutputReceiver
+import com.github.tarcv.tongs.api.TongsConfiguration
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
+import com.github.tarcv.tongs.api.run.aTestResult
+import com.github.tarcv.tongs.model.AndroidDevice.Builder.aDevice
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch.Companion.statusMarker
+import org.junit.Assert
+import org.junit.Test
+import java.lang.reflect.Proxy
+import java.util.Collections
+
+class AndroidPermissionGrantingTestCaseRunRuleTest {
+    private val executedCommands = Collections.synchronizedList(ArrayList<String>())
+    private val device = aDevice()
+            .withSerial("fake-device")
+            .withDeviceInterface(createShell())
+            .build()
+    private val configuration = Proxy.newProxyInstance(
+            javaClass.classLoader,
+            arrayOf(TongsConfiguration::class.java)
+    ) { _, method, _ ->
+        when (method.name) {
+            "getApplicationPackage" -> APP
+            "getInstrumentationPackage" -> TEST_APP
+            else -> throw UnsupportedOperationException(method.name)
+        }
+    } as TongsConfiguration
+
+    @Test
+    fun testPermissionsNotNeededByTheNextTestCaseAreRevoked() {
+        val first = createRule(CAMERA)
+        first.before()
+        device.commandBatch.flush()
+        first.after(TestCaseRunRuleAfterArguments(aResult()))
+
+        executedCommands.clear()
+        createRule(LOCATION).before()
+        device.commandBatch.flush()
+
+        Assert.assertEquals(
+                listOf("pm revoke $APP $CAMERA", "pm grant $APP $LOCATION", "pm grant $TEST_APP $LOCATION"),
+                executedCommands
+        )
+        Assert.assertEquals(setOf(LOCATION), device.permissionState.grantedTo(APP))
+    }
+
+    @Test
+    fun testBucketMembersKeepPermissionsOfEachOther() {
+        val bucketRules = listOf(createRule(CAMERA), createRule(LOCATION))
+
+        // All members of a bucket are prepared before the bucket starts
+        bucketRules.forEach {
+            it.before()
+            device.commandBatch.flush()
+        }
+
+        Assert.assertTrue(executedCommands.none { it.startsWith("pm revoke") })
+        Assert.assertEquals(setOf(CAMERA, LOCATION), device.permissionState.grantedTo(APP))
+
+        bucketRules.forEach { it.after(TestCaseRunRuleAfterArguments(aResult())) }
+        executedCommands.clear()
+        createRule().before()
+        device.commandBatch.flush()
+
+        Assert.assertEquals(listOf("pm revoke $APP $LOCATION", "pm revoke $APP $CAMERA").sorted(),
+                executedCommands.sorted())
+    }
+
+    private fun createRule(vararg permissions: String): AndroidPermissionGrantingTestCaseRunRule {
+        return AndroidPermissionGrantingTestCaseRunRule(configuration, device, permissions.toList())
+    }
+
+    private fun aResult() = aTestResult("ExampleTest", "test", ResultStatus.PASS, emptyList())
+
+    /**
+     * Records commands of batch scripts and reports them as successful
+     */
+    private fun createShell(): IDevice {
+        val stepPattern = Regex("""\s*(.+?); echo "$statusMarker(\d+):\$\?";""")
+        return Proxy.newProxyInstance(javaClass.classLoader, arrayOf(IDevice::class.java)) { proxy, method, args ->
+            when (method.name) {
+                "executeShellCommand" -> {
+                    val output = stepPattern.findAll(args[0] as String)
+                            .joinToString("") { step ->
+                                val (command, index) = step.destructured
+                                executedCommands.add(command)
+                                "$statusMarker$index:0\n"
+                            }
+                            .toByteArray()
+                    val receiver = args[1] as IShellOutputReceiver
+                    receiver.addOutput(output, 0, output.size)
+                    receiver.flush()
+                    null
+                }
+                "supportsFeature" -> false
+                "getSerialNumber" -> "fake-device"
+                "hashCode" -> System.identityHashCode(proxy)
+                "equals" -> proxy === args[0]
+                "toString" -> "FakeDevice"
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as IDevice
+    }
+
+    companion object {
+        private const val APP = "com.example"
+        private const val TEST_APP = "com.example.test"
+        private const val CAMERA = "android.permission.CAMERA"
+        private const val LOCATION = "android.permission.ACCESS_FINE_LOCATION"
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.model.AndroidDevice.Builder.aDevice
+import org.junit.Assert
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+class DeviceArtifactPipelineTest {
+    private val pipeline = DeviceArtifactPipeline(aDevice().build())
+
+    @Test
+    fun testAwaitIdleWaitsForSubmittedJobs() {
+        val finishedJobs = AtomicInteger()
+        val release = CountDownLatch(1)
+        repeat(3) {
+            pipeline.submit("run a test job") {
+                release.await()
+                finishedJobs.incrementAndGet()
+            }
+        }
+
+        Assert.assertFalse(pipeline.whenIdle().isDone)
+        release.countDown()
+        pipeline.awaitIdle()
+
+        Assert.assertEquals(3, finishedJobs.get())
+        Assert.assertTrue(pipeline.whenIdle().isDone)
+    }
+
+    @Test
+    fun testFailedJobDoesNotFailWaiting() {
+        pipeline.submit("run a failing job") {
+            throw RuntimeException("Expected failure")
+        }
+
+        pipeline.whenIdle().get(10, TimeUnit.SECONDS)
+    }
+
+    @Test
+    fun testStuckJobsAreAbandonedAfterTimeout() {
+        val shortPipeline = DeviceArtifactPipeline(aDevice().build(), 100)
+        val release = CountDownLatch(1)
+        try {
+            shortPipeline.submit("run a stuck job") {
+                release.await()
+            }
+
+            try {
+                shortPipeline.whenIdle().get(10, TimeUnit.SECONDS)
+                Assert.fail("Waiting for a stuck job should time out")
+            } catch (e: ExecutionException) {
+                Assert.assertTrue(e.cause is TimeoutException)
+            }
+
+            // The abandoned job is not waited for anymore
+            Assert.assertTrue(shortPipeline.whenIdle().isDone)
+            shortPipeline.awaitIdle()
+        } finally {
+            release.countDown()
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.runner.DeviceResetState.Baseline
+import org.junit.Assert
+import org.junit.Test
+
+class DeviceResetStateTest {
+    private val state = DeviceResetState()
+
+    @Test
+    fun testClearOncePerClass() {
+        Assert.assertEquals(ResetStrategy.CLEAR, state.resolveStrategy(ResetStrategy.CLEAR_ONCE_PER_CLASS, "Class1"))
+        Assert.assertEquals(ResetStrategy.FORCE_STOP, state.resolveStrategy(ResetStrategy.CLEAR_ONCE_PER_CLASS, "Class1"))
+        Assert.assertEquals(ResetStrategy.CLEAR, state.resolveStrategy(ResetStrategy.CLEAR_ONCE_PER_CLASS, "Class2"))
+    }
+
+    @Test
+    fun testOtherStrategiesAreKeptAndSwitchClasses() {
+        Assert.assertEquals(ResetStrategy.FORCE_STOP, state.resolveStrategy(ResetStrategy.FORCE_STOP, "Class1"))
+        Assert.assertEquals(ResetStrategy.RESTORE_BASELINE, state.resolveStrategy(ResetStrategy.RESTORE_BASELINE, "Class2"))
+
+        // The previous test case on the device was from Class2
+        Assert.assertEquals(ResetStrategy.CLEAR, state.resolveStrategy(ResetStrategy.CLEAR_ONCE_PER_CLASS, "Class1"))
+    }
+
+    @Test
+    fun testBaselineIsCapturedOnce() {
+        Assert.assertNull(state.baselineOf("com.example"))
+        Assert.assertTrue(state.startCapturing("com.example"))
+
+        // E.g. the next test case of the same bucket
+        Assert.assertFalse(state.startCapturing("com.example"))
+        Assert.assertEquals(Baseline.CAPTURING, state.baselineOf("com.example"))
+
+        state.finishCapturing("com.example", Baseline.CAPTURED)
+        Assert.assertEquals(Baseline.CAPTURED, state.baselineOf("com.example"))
+        Assert.assertFalse(state.startCapturing("com.example"))
+    }
+
+    @Test
+    fun testBaselineIsCapturedAgainAfterFailedTestCase() {
+        Assert.assertTrue(state.startCapturing("com.example"))
+        state.finishCapturing("com.example", null)
+
+        Assert.assertNull(state.baselineOf("com.example"))
+        Assert.assertTrue(state.startCapturing("com.example"))
+    }
+
+    @Test
+    fun testBaselinesArePerPackage() {
+        Assert.assertTrue(state.startCapturing("com.example"))
+        state.finishCapturing("com.example", Baseline.UNAVAILABLE)
+
+        Assert.assertEquals(Baseline.UNAVAILABLE, state.baselineOf("com.example"))
+        Assert.assertTrue(state.startCapturing("com.example.test"))
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun testFinishingWithoutCapturingFails() {
+        state.finishCapturing("com.example", Baseline.CAPTURED)
+    }
+}
@@ -76,6 +76,49 @@ public class LogCatSerializerTest {
         ));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSerialisesLogsReceivedInParts() {
+        TestIdentifier test = new TestIdentifier(CLASS1_NAME, TEST1_NAME);
+        SpyLogCatWriter logCatWriter = new SpyLogCatWriter();
+        LogCatSerializer serializer = new LogCatSerializer(test, logCatWriter);
+
+        List<LogCatMessage> firstPart = new ArrayList<>();
+        addTestStartEnd(firstPart, TEST2_NAME, CLASS1_NAME);
+        firstPart.add(nextMessage(startedMessage(TEST1_NAME, CLASS1_NAME)));
+        List<LogCatMessage> secondPart = new ArrayList<>();
+        secondPart.add(nextMessage("in the middle"));
+        secondPart.add(nextMessage(finishedMessage(TEST1_NAME, CLASS1_NAME)));
+        addTestStartEnd(secondPart, TEST2_NAME, CLASS2_NAME);
+        serializer.serializeLogs(firstPart);
+        serializer.serializeLogs(secondPart);
+
+        MatcherAssert.assertThat(logCatWriter.logCatMessages, IsIterableContainingInOrder.contains(
+                logCatMessageWithString(startedMessage(TEST1_NAME, CLASS1_NAME)),
+                logCatMessageWithString("in the middle"),
+                logCatMessageWithString(finishedMessage(TEST1_NAME, CLASS1_NAME))
+        ));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testIgnoresLaterAttemptsOfTheSameTest() {
+        TestIdentifier test = new TestIdentifier(CLASS1_NAME, TEST1_NAME);
+        SpyLogCatWriter logCatWriter = new SpyLogCatWriter();
+        LogCatSerializer serializer = new LogCatSerializer(test, logCatWriter);
+
+        List<LogCatMessage> logCatMessages = new ArrayList<>();
+        addTestStartEnd(logCatMessages, TEST1_NAME, CLASS1_NAME);
+        logCatMessages.add(nextMessage(startedMessage(TEST1_NAME, CLASS1_NAME)));
+        logCatMessages.add(nextMessage("from the retry"));
+        serializer.serializeLogs(logCatMessages);
+
+        MatcherAssert.assertThat(logCatWriter.logCatMessages, IsIterableContainingInOrder.contains(
+                logCatMessageWithString(startedMessage(TEST1_NAME, CLASS1_NAME)),
+                logCatMessageWithString(finishedMessage(TEST1_NAME, CLASS1_NAME))
+        ));
+    }
+
     private org.hamcrest.Matcher<LogCatMessage> logCatMessageWithString(final String expected) {
         return new TypeSafeDiagnosingMatcher<LogCatMessage>() {
             @Override
@@ -114,11 +157,11 @@ public class LogCatSerializerTest {
     }
 
     private static class SpyLogCatWriter implements LogCatWriter {
-        private List<LogCatMessage> logCatMessages;
+        private final List<LogCatMessage> logCatMessages = new ArrayList<>();
 
         @Override
         public void writeLogs(List<LogCatMessage> logCatMessages) {
-            this.logCatMessages = logCatMessages;
+            this.logCatMessages.addAll(logCatMessages);
         }
     }
 }
@@ -220,4 +220,45 @@ class ResultListenerTest {
                 result.trace.toSystemLineSeparator()
         )
     }
+
+    @Test
+    fun bucketMemberSuccess() {
+        val otherTest = TestIdentifier(event.testClass, "otherTest")
+        val bucketListener = RunListenerAdapter("runName", test, listOf(resultListener), true)
+
+        bucketListener.onBeforeTestRunStarted()
+        bucketListener.testRunStarted("run", 2)
+        bucketListener.testStarted(otherTest)
+        bucketListener.testFailed(otherTest, trace)
+        bucketListener.testEnded(otherTest, emptyMap())
+        bucketListener.testStarted(test)
+        bucketListener.testEnded(test, emptyMap())
+        bucketListener.testRunFailed("runFailure after the expected test")
+        bucketListener.testRunEnded(1000, emptyMap())
+        bucketListener.onAfterTestRunEnded()
+
+        val result = resultListener.result
+        asserter.assertTrue(null, bucketListener.hasExpectedTestResult())
+        asserter.assertEquals(null, ResultStatus.PASS, result.status)
+        asserter.assertEquals(null, "", result.output)
+        asserter.assertEquals(null, "", result.trace)
+    }
+
+    @Test
+    fun bucketMemberNotReached() {
+        val otherTest = TestIdentifier(event.testClass, "otherTest")
+        val bucketListener = RunListenerAdapter("runName", test, listOf(resultListener), true)
+
+        bucketListener.onBeforeTestRunStarted()
+        bucketListener.testRunStarted("run", 2)
+        bucketListener.testStarted(otherTest)
+        bucketListener.testRunFailed("Process crashed")
+        bucketListener.testRunEnded(1000, emptyMap())
+        bucketListener.onAfterTestRunEnded()
+
+        val result = resultListener.result
+        asserter.assertTrue(null, !bucketListener.hasExpectedTestResult())
+        asserter.assertEquals(null, null, result.status)
+        asserter.assertEquals(null, null, result.startTime)
+    }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.system
+
+import org.junit.Assert
+import org.junit.Test
+
+class DevicePermissionStateTest {
+    private val state = DevicePermissionState()
+
+    @Test
+    fun testAllRequiredPermissionsAreGrantedInitially() {
+        Assert.assertEquals(listOf(CAMERA, LOCATION), state.toGrant(APP, listOf(CAMERA, LOCATION, CAMERA)))
+        Assert.assertEquals(emptyList<String>(), state.toRevoke(APP, listOf(CAMERA)))
+    }
+
+    @Test
+    fun testOnlyMissingPermissionsAreGranted() {
+        state.onGranted(APP, CAMERA)
+
+        Assert.assertEquals(listOf(LOCATION), state.toGrant(APP, listOf(CAMERA, LOCATION)))
+    }
+
+    @Test
+    fun testOnlyPermissionsThatAreNotRequiredAreRevoked() {
+        state.onGranted(APP, CAMERA)
+        state.onGranted(APP, LOCATION)
+
+        Assert.assertEquals(listOf(CAMERA), state.toRevoke(APP, listOf(LOCATION)))
+        Assert.assertEquals(emptyList<String>(), state.toGrant(APP, listOf(LOCATION)))
+    }
+
+    @Test
+    fun testPackagesAreTrackedSeparately() {
+        state.onGranted(TEST_APP, CAMERA)
+
+        Assert.assertEquals(listOf(CAMERA), state.toGrant(APP, listOf(CAMERA)))
+        Assert.assertEquals(emptyList<String>(), state.toRevoke(APP, emptyList()))
+        Assert.assertEquals(listOf(CAMERA), state.toRevoke(TEST_APP, emptyList()))
+    }
+
+    @Test
+    fun testRevokedPermissionIsGrantedAgain() {
+        state.onGranted(APP, CAMERA)
+        state.onRevoked(APP, CAMERA)
+
+        Assert.assertEquals(listOf(CAMERA), state.toGrant(APP, listOf(CAMERA)))
+        Assert.assertEquals(emptySet<String>(), state.packagesWithGrants())
+    }
+
+    @Test
+    fun testClearingDataForgetsGrantedPermissions() {
+        state.onGranted(APP, CAMERA)
+        state.onGranted(TEST_APP, CAMERA)
+        state.onDataCleared(APP)
+
+        Assert.assertEquals(listOf(CAMERA), state.toGrant(APP, listOf(CAMERA)))
+        Assert.assertEquals(setOf(TEST_APP), state.packagesWithGrants())
+    }
+
+    @Test
+    fun testPermissionsInUseAreNotRevoked() {
+        state.onGranted(APP, CAMERA)
+        state.onGranted(APP, LOCATION)
+        state.acquire(listOf(CAMERA))
+
+        Assert.assertEquals(listOf(LOCATION), state.toRevoke(APP, emptyList()))
+    }
+
+    @Test
+    fun testReleasedPermissionsAreRevoked() {
+        state.onGranted(APP, CAMERA)
+        state.acquire(listOf(CAMERA))
+        state.acquire(listOf(CAMERA))
+
+        state.release(listOf(CAMERA))
+        Assert.assertEquals(emptyList<String>(), state.toRevoke(APP, emptyList()))
+
+        state.release(listOf(CAMERA))
+        Assert.assertEquals(listOf(CAMERA), state.toRevoke(APP, emptyList()))
+    }
+
+    companion object {
+        private const val APP = "com.example"
+        private const val TEST_APP = "com.example.test"
+        private const val CAMERA = "android.permission.CAMERA"
+        private const val LOCATION = "android.permission.ACCESS_FINE_LOCATION"
+    }
+}
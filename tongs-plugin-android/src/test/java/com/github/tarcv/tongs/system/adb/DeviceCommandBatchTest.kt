@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.system.adb
+
+import com.github.tarcv.tongs.model.AndroidDevice.Builder.aDevice
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch.Companion.maxScriptLength
+import com.github.tarcv.tongs.system.adb.DeviceCommandBatch.Companion.statusMarker
+import org.junit.Assert
+import org.junit.Test
+
+class DeviceCommandBatchTest {
+    private val batch = DeviceCommandBatch(aDevice().build())
+
+    @Test
+    fun testShortStepsShareOneChunk() {
+        val steps = listOf("input keyevent 82", "pm clear com.example", "input keyevent 3").map(::aStep)
+
+        Assert.assertEquals(listOf(steps), batch.chunked(steps))
+    }
+
+    @Test
+    fun testLongBatchIsSplitInOrder() {
+        val longArgument = "a".repeat(maxScriptLength / 3)
+        val steps = (1..5).map { aStep("echo $it$longArgument") }
+
+        val chunks = batch.chunked(steps)
+
+        Assert.assertTrue(chunks.size > 1)
+        Assert.assertEquals(steps, chunks.flatten())
+        chunks.forEach { chunk ->
+            Assert.assertTrue(chunk.sumOf { it.command.length } <= maxScriptLength)
+        }
+    }
+
+    @Test
+    fun testTooLongStepGetsItsOwnChunk() {
+        val steps = listOf(aStep("echo 1"), aStep("echo " + "a".repeat(maxScriptLength)), aStep("echo 2"))
+
+        Assert.assertEquals(
+                listOf(listOf(steps[0]), listOf(steps[1]), listOf(steps[2])),
+                batch.chunked(steps)
+        )
+    }
+
+    @Test
+    fun testOutputIsSplitBetweenSteps() {
+        val steps = listOf(aStep("pm clear com.example"), aStep("pm grant com.example android.permission.CAMERA"))
+        val output = "Success\r\n" +
+                "${statusMarker}0:0\r\n" +
+                "Exception occurred while executing:\r\n" +
+                "Unknown permission\r\n" +
+                "${statusMarker}1:255\r\n"
+
+        val results = batch.parseOutput(steps, output)
+
+        Assert.assertEquals(listOf(0, 255), results.map { it.exitCode })
+        Assert.assertEquals(listOf(true, false), results.map { it.isSuccessful })
+        Assert.assertEquals("Success", results[0].output)
+        Assert.assertEquals("Exception occurred while executing:\nUnknown permission", results[1].output)
+    }
+
+    @Test
+    fun testStepsAfterInterruptedScriptHaveNoExitCode() {
+        val steps = listOf(aStep("input keyevent 82"), aStep("pm clear com.example"), aStep("input keyevent 3"))
+        val output = "${statusMarker}0:0\n" +
+                "Killed\n"
+
+        val results = batch.parseOutput(steps, output)
+
+        Assert.assertEquals(listOf(0, null, null), results.map { it.exitCode })
+        Assert.assertEquals("Killed", results[1].output)
+        Assert.assertFalse(results[2].isSuccessful)
+    }
+
+    private fun aStep(command: String) = DeviceCommandBatch.Step(command) {}
+}
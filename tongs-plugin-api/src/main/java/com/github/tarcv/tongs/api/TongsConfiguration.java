@@ -73,6 +73,27 @@ public interface TongsConfiguration {
 
     boolean shouldTerminateDdm();
 
+    int getDeviceSetupConcurrency();
+
+    int getTestsBucket();
+
+    /**
+     * Maximum number of logcat messages of a test case that are kept in memory until they are written to the log
+     * files in background, more messages are written right away by the thread receiving them
+     */
+    int getLogcatMemoryLimit();
+
+    /**
+     * Logcat messages with lower levels are dropped when they are received, null keeps all levels
+     */
+    @Nullable
+    String getLogcatMinLevel();
+
+    /**
+     * Logcat messages with these tags are dropped when they are received
+     */
+    Collection<String> getLogcatExcludedTags();
+
     List<Object> getPluginsInstances();
 
     List<String> getExcludedPlugins();
@@ -46,6 +46,14 @@ public abstract class Device {
 
     public abstract Diagnostics getSupportedVisualDiagnostics();
 
+    /**
+     * A device that becomes unavailable (e.g. its host stopped responding) leaves its pool.
+     * Test cases that failed on it while it was unavailable are executed on other devices.
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
     public String getName() {
         return getModelName() + nameSuffix;
     }
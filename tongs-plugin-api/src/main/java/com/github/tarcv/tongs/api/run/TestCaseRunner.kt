@@ -16,6 +16,7 @@ import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.devices.Pool
 import com.github.tarcv.tongs.api.result.RunTesult
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.api.testcases.TestCase
 import java.time.Instant
 
@@ -28,6 +29,21 @@ interface TestCaseRunner {
     fun run(arguments: TestCaseRunnerArguments): RunTesult
 }
 
+/**
+ * A runner that can execute several test cases in one go (e.g. in one instrumentation run),
+ * used when [com.github.tarcv.tongs.api.TongsConfiguration.getTestsBucket] is greater than 1.
+ */
+interface BucketTestCaseRunner : TestCaseRunner {
+    /**
+     * @return results in the same order as [arguments], null for test cases that were not finished
+     *  (e.g. because the run crashed before them). Such test cases are executed again separately.
+     *  A runner may also return null for test cases it has not started yet when
+     *  [TestCaseRunnerArguments.reclaimRequests] is requested, so that an idle device executes them instead.
+     *  Results passed earlier to [TestCaseRunnerArguments.earlyResults] must be returned here too.
+     */
+    fun runBucket(arguments: List<TestCaseRunnerArguments>): List<TestCaseRunResult?>
+}
+
 // TODO: review arguments
 data class TestCaseRunnerContext(
         val configuration: RunConfiguration,
@@ -38,5 +54,39 @@ data class TestCaseRunnerContext(
 data class TestCaseRunnerArguments(
         val fileManager: TestCaseFileManager,
         val testCaseEvent: TestCaseEvent,
-        val startTimestampUtc: Instant
-)
\ No newline at end of file
+        val startTimestampUtc: Instant,
+        val reclaimRequests: ReclaimRequests = ReclaimRequests.NONE,
+        val earlyResults: EarlyResultListener = EarlyResultListener.NONE
+)
+
+/**
+ * Tells a runner whether another device is idle and could execute the test case instead
+ */
+interface ReclaimRequests {
+    fun isRequested(): Boolean
+
+    companion object {
+        @JvmField
+        val NONE: ReclaimRequests = object : ReclaimRequests {
+            override fun isRequested(): Boolean = false
+        }
+    }
+}
+
+/**
+ * Lets a bucket runner report the result of a test case as soon as it is known, so that it is processed
+ * without waiting for the rest of the bucket. Must be called from the thread that called
+ * [BucketTestCaseRunner.runBucket], at most once per test case.
+ */
+interface EarlyResultListener {
+    fun onResult(result: TestCaseRunResult)
+
+    companion object {
+        @JvmField
+        val NONE: EarlyResultListener = object : EarlyResultListener {
+            override fun onResult(result: TestCaseRunResult) {
+                // no op
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ package com.github.tarcv.tongs;
 
 import com.github.tarcv.tongs.api.TongsConfiguration;
 import com.github.tarcv.tongs.injector.RuleManagerFactory;
+import com.github.tarcv.tongs.runner.listeners.LogcatFilter;
 import com.github.tarcv.tongs.system.axmlparser.InstrumentationInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +68,11 @@ public class Configuration implements TongsConfiguration {
     private final String excludedAnnotation;
     private final TongsIntegrationTestRunType tongsIntegrationTestRunType;
     private final boolean terminateDdm;
+    private final int deviceSetupConcurrency;
+    private final int testsBucket;
+    private final int logcatMemoryLimit;
+    private final String logcatMinLevel;
+    private final Collection<String> logcatExcludedTags;
     private final Map<String, Object> pluginConfiguration;
 
     private final String PLUGIN_EXCLUDE_PREFIX = "-";
@@ -95,6 +101,11 @@ public class Configuration implements TongsConfiguration {
         this.excludedAnnotation = builder.excludedAnnotation;
         this.tongsIntegrationTestRunType = builder.tongsIntegrationTestRunType;
         this.terminateDdm = builder.terminateDdm;
+        this.deviceSetupConcurrency = builder.deviceSetupConcurrency;
+        this.testsBucket = builder.testsBucket;
+        this.logcatMemoryLimit = builder.logcatMemoryLimit;
+        this.logcatMinLevel = builder.logcatMinLevel;
+        this.logcatExcludedTags = builder.logcatExcludedTags;
     }
 
     private Builder newBuilder() {
@@ -122,6 +133,11 @@ public class Configuration implements TongsConfiguration {
         builder.excludedAnnotation = this.excludedAnnotation;
         builder.tongsIntegrationTestRunType = this.tongsIntegrationTestRunType;
         builder.terminateDdm = this.terminateDdm;
+        builder.deviceSetupConcurrency = this.deviceSetupConcurrency;
+        builder.testsBucket = this.testsBucket;
+        builder.logcatMemoryLimit = this.logcatMemoryLimit;
+        builder.logcatMinLevel = this.logcatMinLevel;
+        builder.logcatExcludedTags = this.logcatExcludedTags;
         return builder;
     }
 
@@ -237,6 +253,32 @@ public class Configuration implements TongsConfiguration {
         return terminateDdm;
     }
 
+    @Override
+    public int getDeviceSetupConcurrency() {
+        return deviceSetupConcurrency;
+    }
+
+    @Override
+    public int getTestsBucket() {
+        return testsBucket;
+    }
+
+    @Override
+    public int getLogcatMemoryLimit() {
+        return logcatMemoryLimit;
+    }
+
+    @Override
+    @Nullable
+    public String getLogcatMinLevel() {
+        return logcatMinLevel;
+    }
+
+    @Override
+    public Collection<String> getLogcatExcludedTags() {
+        return logcatExcludedTags;
+    }
+
     @Override
     public TongsIntegrationTestRunType getTongsIntegrationTestRunType() {
         return tongsIntegrationTestRunType;
@@ -305,6 +347,11 @@ public class Configuration implements TongsConfiguration {
         private String excludedAnnotation;
         private TongsIntegrationTestRunType tongsIntegrationTestRunType = NONE;
         private boolean terminateDdm = true;
+        private int deviceSetupConcurrency;
+        private int testsBucket;
+        private int logcatMemoryLimit;
+        private String logcatMinLevel;
+        private Collection<String> logcatExcludedTags;
         private Map<String, Object> pluginConfiguration;
 
         public static Builder configuration() {
@@ -421,6 +468,31 @@ public class Configuration implements TongsConfiguration {
             return this;
         }
 
+        public Builder withDeviceSetupConcurrency(int deviceSetupConcurrency) {
+            this.deviceSetupConcurrency = deviceSetupConcurrency;
+            return this;
+        }
+
+        public Builder withTestsBucket(int testsBucket) {
+            this.testsBucket = testsBucket;
+            return this;
+        }
+
+        public Builder withLogcatMemoryLimit(int logcatMemoryLimit) {
+            this.logcatMemoryLimit = logcatMemoryLimit;
+            return this;
+        }
+
+        public Builder withLogcatMinLevel(@Nullable String logcatMinLevel) {
+            this.logcatMinLevel = logcatMinLevel;
+            return this;
+        }
+
+        public Builder withLogcatExcludedTags(Collection<String> logcatExcludedTags) {
+            this.logcatExcludedTags = logcatExcludedTags;
+            return this;
+        }
+
         public Builder withPluginConfiguration(Map<String, Object> configuration) {
             this.pluginConfiguration = configuration;
             return this;
@@ -464,7 +536,15 @@ public class Configuration implements TongsConfiguration {
             excludedSerials = assignValueOrDefaultIfNull(excludedSerials, Collections.emptyList());
             checkArgument(totalAllowedRetryQuota >= 0, "Total allowed retry quota should not be negative.");
             checkArgument(retryPerTestCaseQuota >= 0, "Retry per test case quota should not be negative.");
+            checkArgument(deviceSetupConcurrency >= 0, "Device setup concurrency should not be negative.");
+            checkArgument(testsBucket >= 0, "Tests bucket size should not be negative.");
+            checkArgument(logcatMemoryLimit >= 0, "Logcat memory limit should not be negative.");
             retryPerTestCaseQuota = assignValueOrDefaultIfZero(retryPerTestCaseQuota, Defaults.RETRY_QUOTA_PER_TEST_CASE);
+            testsBucket = assignValueOrDefaultIfZero(testsBucket, Defaults.TESTS_BUCKET);
+            logcatMemoryLimit = assignValueOrDefaultIfZero(logcatMemoryLimit, Defaults.LOGCAT_MEMORY_LIMIT);
+            logcatExcludedTags = assignValueOrDefaultIfNull(logcatExcludedTags, Collections.emptyList());
+            checkArgument(logcatMinLevel == null || LogcatFilter.isKnownLevel(logcatMinLevel),
+                    "Unknown logcat level '%s'.", logcatMinLevel);
             if (withWarnings) {
                 logArgumentsBadInteractions();
             }
@@ -27,4 +27,6 @@ class Defaults {
     static final String TITLE = "Tongs Report";
     static final String SUBTITLE = "";
     static final int RETRY_QUOTA_PER_TEST_CASE = 1;
+    static final int TESTS_BUCKET = 1;
+    static final int LOGCAT_MEMORY_LIMIT = 10_000;
 }
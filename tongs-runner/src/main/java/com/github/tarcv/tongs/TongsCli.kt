@@ -70,6 +70,11 @@ object TongsCli {
                     .withPoolingStrategy(tongsConfiguration.poolingStrategy)
                     .withExcludedAnnotation(tongsConfiguration.excludedAnnotation)
                     .withTongsIntegrationTestRunType(tongsConfiguration.tongsIntegrationTestRunType)
+                    .withDeviceSetupConcurrency(tongsConfiguration.deviceSetupConcurrency)
+                    .withTestsBucket(tongsConfiguration.testsBucket)
+                    .withLogcatMemoryLimit(tongsConfiguration.logcatMemoryLimit)
+                    .withLogcatMinLevel(tongsConfiguration.logcatMinLevel)
+                    .withLogcatExcludedTags(tongsConfiguration.logcatExcludedTags)
                     .withPluginConfiguration(tongsConfiguration.configuration)
                     .build(true)
 
@@ -85,6 +85,33 @@ public abstract class TongsConfigurationExtension {
      */
     public String excludedAnnotation;
 
+    /**
+     * Maximum number of devices that are set up (packages installed, etc.) at the same time. 0 means no limit.
+     */
+    public int deviceSetupConcurrency;
+
+    /**
+     * Maximum number of tests executed in one instrumentation run on a device. Tests in the same run share
+     * the application process, so per-test cleanup happens only before the whole run. Defaults to 1.
+     */
+    public int testsBucket;
+
+    /**
+     * Maximum number of logcat messages of a test case kept in memory, older messages are written to the log files
+     * right away. Defaults to 10000.
+     */
+    public int logcatMemoryLimit;
+
+    /**
+     * Logcat messages below this level (verbose, debug, info, warn, error or assert) are not captured
+     */
+    public String logcatMinLevel;
+
+    /**
+     * Logcat messages with these tags are not captured
+     */
+    public Collection<String> logcatExcludedTags;
+
     /**
      * Plugins to load
      */
@@ -24,6 +24,7 @@ import com.github.tarcv.tongs.injector.RuleManagerFactory
 import com.github.tarcv.tongs.injector.TestCaseRuleManager
 import com.github.tarcv.tongs.injector.TestCaseRunnerManager
 import com.github.tarcv.tongs.injector.TestSuiteLoaderSupplier
+import com.github.tarcv.tongs.model.TestDurationHistory
 import com.github.tarcv.tongs.pooling.NoDevicesForPoolException
 import com.github.tarcv.tongs.pooling.NoPoolLoaderConfiguredException
 import com.github.tarcv.tongs.pooling.PoolLoader
@@ -35,6 +36,8 @@ import com.github.tarcv.tongs.summary.SummaryGeneratorHook
 import com.github.tarcv.tongs.tests.JoiningTestProvider
 import org.koin.core.context.GlobalContext
 import org.slf4j.LoggerFactory
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
 import java.util.concurrent.CountDownLatch
 
 class TongsRunner(private val poolLoader: PoolLoader,
@@ -43,7 +46,8 @@ class TongsRunner(private val poolLoader: PoolLoader,
                   private val summaryGeneratorHook: SummaryGeneratorHook,
                   private val testCaseRuleManager: TestCaseRuleManager,
                   private val testCaseRunnerManager: TestCaseRunnerManager,
-                  private val ruleManagerFactory: RuleManagerFactory
+                  private val ruleManagerFactory: RuleManagerFactory,
+                  private val configuration: Configuration
 ) {
     class PoolTask(
             val pool: Pool,
@@ -74,16 +78,28 @@ class TongsRunner(private val poolLoader: PoolLoader,
         val numberOfPools = pools.size
         val poolCountDownLatch = CountDownLatch(numberOfPools)
         val poolExecutor = Utils.namedExecutor(numberOfPools, "PoolExecutor-%d")
+        val setupExecutor = Utils.namedExecutor(deviceSetupThreads(pools), "DeviceSetupExecutor-%d")
         return try {
             val deviceTestRunnerFactory by GlobalContext.get().inject<DeviceTestRunnerFactory>()
 
+            val poolDeviceRunners = pools.associateWith { pool ->
+                pool.devices.map { device ->
+                    device to deviceTestRunnerFactory.createDeviceTestRunner(pool, device, ruleManagerFactory)
+                }
+            }
+
+            // Devices of all pools are set up concurrently, each pool only waits for its own devices
+            val poolDeviceSetups = poolDeviceRunners.mapValues { (_, deviceRunners) ->
+                deviceRunners.map { (_, deviceRunner) ->
+                    CompletableFuture.runAsync(deviceRunner::runBeforeRules, setupExecutor)
+                }
+            }
+
             val poolTestCasesMap: Map<Pool, PoolTask> = pools
                 .map { pool ->
-                    val deviceRunners = pool.devices.map { device ->
-                        device to deviceTestRunnerFactory.createDeviceTestRunner(pool, device, ruleManagerFactory)
-                    }
+                    val deviceRunners = poolDeviceRunners.getValue(pool)
 
-                    deviceRunners.forEach { it.second.runBeforeRules() }
+                    awaitDeviceSetup(pool, poolDeviceSetups.getValue(pool))
 
                     val testCaseRules = testCaseRuleManager
                         .createRulesFrom { configuration ->
@@ -161,16 +177,40 @@ class TongsRunner(private val poolLoader: PoolLoader,
             poolCountDownLatch.await()
             progressReporter.stop()
 
+            val testDurationHistory by GlobalContext.get().inject<TestDurationHistory>()
+            testDurationHistory.recordAndSave(allResults)
+
             val overallSuccess = summaryGeneratorHook.defineOutcome()
             summaryGeneratorHook.unregisterHook()
             logger.info("Overall success: $overallSuccess")
 
             overallSuccess
         } finally {
+            setupExecutor.shutdownNow()
             poolExecutor.shutdownNow()
         }
     }
 
+    private fun deviceSetupThreads(pools: Collection<Pool>): Int {
+        val totalDevices = pools.sumOf { it.size() }
+        val limit = configuration.deviceSetupConcurrency
+        return if (limit > 0) {
+            limit.coerceAtMost(totalDevices)
+        } else {
+            totalDevices
+        }.coerceAtLeast(1)
+    }
+
+    private fun awaitDeviceSetup(pool: Pool, deviceSetups: List<CompletableFuture<Void>>) {
+        val startNanos = System.nanoTime()
+        try {
+            CompletableFuture.allOf(*deviceSetups.toTypedArray()).join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
+        }
+        logger.info("Waited {} ms for devices of pool {} to be set up", Utils.millisSinceNanoTime(startNanos), pool.name)
+    }
+
     companion object {
         private val logger = LoggerFactory.getLogger(TongsRunner::class.java)
 
@@ -17,6 +17,9 @@ import com.github.tarcv.tongs.api.run.TestCaseRunnerContext
 import com.github.tarcv.tongs.api.run.TestCaseRunnerFactory
 import com.github.tarcv.tongs.api.testcases.TestCaseRuleContext
 import com.github.tarcv.tongs.api.testcases.TestCaseRuleFactory
+import com.github.tarcv.tongs.model.LongestExpectedFirstOrdering
+import com.github.tarcv.tongs.model.TestCaseEventOrdering
+import com.github.tarcv.tongs.model.TestDurationHistory
 import com.github.tarcv.tongs.plugin.android.PropertiesTestCaseRuleFactory
 import com.github.tarcv.tongs.runner.AndroidInstrumentedTestCaseRunnerFactory
 import com.github.tarcv.tongs.runner.DeviceTestRunnerFactory
@@ -30,8 +33,16 @@ import org.slf4j.LoggerFactory
 val runnerModule = module(createdAtStart = modulesCreatedAtStart) {
     factory { PoolProgressTrackers(mutableMapOf()) }
 
+    single {
+        TestDurationHistory(TestDurationHistory.historyFileFor(get<Configuration>().output), get())
+    }
+
+    factory<TestCaseEventOrdering> {
+        LongestExpectedFirstOrdering(get<TestDurationHistory>().snapshot())
+    }
+
     factory {
-        PoolTestRunnerFactory(get(), get())
+        PoolTestRunnerFactory(get(), get(), get())
     }
 
     factory<ProgressReporter> {
@@ -65,6 +76,7 @@ val runnerModule = module(createdAtStart = modulesCreatedAtStart) {
             get(),
             ruleManager,
             runnerManager,
+            get(),
             get()
         )
 
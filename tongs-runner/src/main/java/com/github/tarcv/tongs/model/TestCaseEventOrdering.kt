@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.model
+
+import com.github.tarcv.tongs.api.run.TestCaseEvent
+
+/**
+ * Decides which of the test cases that are available for a device is handed out by [TestCaseEventQueue] first.
+ * Test cases that are equal according to an ordering are handed out in the order they were added to the queue.
+ */
+interface TestCaseEventOrdering : Comparator<TestCaseEvent>
+
+object InsertionOrdering : TestCaseEventOrdering {
+    override fun compare(o1: TestCaseEvent, o2: TestCaseEvent): Int = 0
+}
+
+/**
+ * Hands out test cases that are expected to take the longest time first,
+ * so that a long test case picked up at the end of a run doesn't define the total time of the run.
+ *
+ * Test cases that were never run before are expected to take the median of known durations.
+ */
+class LongestExpectedFirstOrdering(
+        private val expectedDurationsMillis: Map<String, Long>
+) : TestCaseEventOrdering {
+    private val defaultDurationMillis = expectedDurationsMillis.values
+            .sorted()
+            .let { if (it.isEmpty()) 0L else it[it.size / 2] }
+
+    override fun compare(o1: TestCaseEvent, o2: TestCaseEvent): Int {
+        return expectedDurationOf(o2).compareTo(expectedDurationOf(o1))
+    }
+
+    private fun expectedDurationOf(event: TestCaseEvent): Long {
+        return expectedDurationsMillis[TestDurationHistory.keyOf(event.testCase)] ?: defaultDurationMillis
+    }
+}
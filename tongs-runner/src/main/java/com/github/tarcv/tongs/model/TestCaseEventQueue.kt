@@ -14,83 +14,310 @@ import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.api.run.TestCaseEvent
 import java.util.*
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.Condition
 import java.util.concurrent.locks.ReentrantLock
+import javax.annotation.concurrent.GuardedBy
 import kotlin.concurrent.withLock
 
-class TestCaseEventQueue(
+/**
+ * Events are grouped by the set of devices they can be executed on. Polling for a device only looks at heads of
+ * the groups that device belongs to, and no lock is taken unless the device has to wait for new events.
+ * When a bucket is built, the first event compatible with the bucket is taken from each group instead.
+ *
+ * A waiting device is woken up only when an event it can execute is offered, or when the last task in work
+ * is finished, as after that nothing can be offered to it anymore.
+ */
+class TestCaseEventQueue @JvmOverloads constructor(
         events: Collection<TestCaseEvent>,
-        resultsCollection: MutableList<TestCaseRunResult>
+        resultsCollection: MutableList<TestCaseRunResult>,
+        private val ordering: TestCaseEventOrdering = InsertionOrdering
 ) {
-    private val list = ArrayList<TestCaseEvent>(events)
     private val syncResultsCollection = Collections.synchronizedList(resultsCollection)
 
-    private val conditionLock = ReentrantLock()
-    private val newItemCondition = conditionLock.newCondition()
+    private val entryComparator = Comparator<Entry> { first, second -> ordering.compare(first.event, second.event) }
+            .thenComparingLong { it.sequenceNumber }
+    private val sequence = AtomicLong()
+
+    private val groupsLock = Any()
+    private val groups = ConcurrentHashMap<EligibilityKey, EventGroup>()
+    private val deviceGroups = ConcurrentHashMap<Device, List<EventGroup>>()
+
+    private val waitLock = ReentrantLock()
+    @GuardedBy("waitLock") private val waitingDevices = HashMap<Device, Condition>()
 
     private val numEventsInWork = AtomicInteger()
 
-    fun pollForDevice(device: Device, timeoutSeconds: Long = 0): TestCaseTask? {
-        val currentTime = System.currentTimeMillis()
-        val timeoutTime = currentTime + timeoutSeconds * 1000
+    init {
+        events.forEach { add(it) }
+    }
+
+    /**
+     * Waits until there is an event the device can execute.
+     * @return a task for the event, or null when there are no events for the device and none can be offered anymore
+     */
+    fun pollForDevice(device: Device): TestCaseTask? {
         while (true) {
-            conditionLock.withLock {
-                val item = tryPollForDevice(device)
-                if (item != null) {
-                    return TestCaseTask(item)
-                }
+            tryTakeForDevice(device)?.let {
+                return it
+            }
 
-                newItemCondition.await(1, TimeUnit.SECONDS)
-                if (timeoutSeconds > 0 && timeoutTime < System.currentTimeMillis()) {
+            waitLock.withLock {
+                // Check again under the lock, so that an event offered right after the previous check is not missed
+                tryTakeForDevice(device)?.let {
+                    return it
+                }
+                if (numEventsInWork.get() == 0) {
                     return null
                 }
+
+                val condition = waitingDevices.getOrPut(device) { waitLock.newCondition() }
+                try {
+                    condition.await()
+                } finally {
+                    waitingDevices.remove(device)
+                }
             }
         }
     }
 
-    fun hasNoPotentialEventsFor(device: Device): Boolean {
-        conditionLock.withLock {
-            return indexOfEventFor(device) == -1 && numEventsInWork.get() == 0
+    /**
+     * Waits for an event like [pollForDevice] and then takes up to [maxSize] - 1 more events the device can execute
+     * right away, as long as they are compatible with the first one. Events that were returned unfinished
+     * from a bucket are always handed out alone.
+     * @return tasks for the taken events, empty when there are no events for the device and none can be offered
+     */
+    fun pollBucketForDevice(
+            device: Device,
+            maxSize: Int,
+            isCompatible: (first: TestCaseEvent, other: TestCaseEvent) -> Boolean
+    ): List<TestCaseTask> {
+        val first = pollForDevice(device) ?: return emptyList()
+        if (maxSize <= 1 || !first.canShareBucket) {
+            return listOf(first)
+        }
+
+        val bucket = mutableListOf(first)
+        while (bucket.size < maxSize) {
+            val next = tryTakeForDevice(device) {
+                it.canShareBucket && isCompatible(first.testCaseEvent, it.event)
+            } ?: break
+            bucket.add(next)
+        }
+        return bucket
+    }
+
+    /**
+     * @return true when a device that can execute [event] is idle waiting for events
+     */
+    fun hasWaitingDevicesFor(event: TestCaseEvent): Boolean {
+        return waitLock.withLock {
+            waitingDevices.keys.any { event.isEnabledOn(it) }
+        }
+    }
+
+    /**
+     * Removes an event that was not taken by any device yet
+     * @return false when the event is not in the queue
+     */
+    fun remove(event: TestCaseEvent): Boolean {
+        val key = EligibilityKey(event.testCase.includedDevices, event.excludedDevices)
+        return groups[key]?.removeEvent(event) ?: false
+    }
+
+    /**
+     * Takes all queued events that none of [devices] can execute, e.g. because every device that could
+     * execute them became unavailable. Such events would otherwise stay in the queue without a result.
+     */
+    fun takeEventsNotEnabledOnAny(devices: Collection<Device>): List<TestCaseTask> {
+        val orphanedGroups = groups.values.filter { group -> devices.none { group.accepts(it) } }
+        val tasks = mutableListOf<TestCaseTask>()
+        for (group in orphanedGroups) {
+            while (true) {
+                // Same as in tryTakeForDevice, the queue must never look drained while an event is being taken
+                numEventsInWork.incrementAndGet()
+                val entry = group.firstMatching { true }
+                if (entry != null && group.remove(entry)) {
+                    tasks.add(TestCaseTask(entry.event, entry.canShareBucket))
+                } else {
+                    finishWork()
+                    if (entry == null) {
+                        break
+                    }
+                }
+            }
         }
+        return tasks
+    }
+
+    fun hasNoPotentialEventsFor(device: Device): Boolean {
+        return groupsFor(device).all { it.isEmpty() } && numEventsInWork.get() == 0
     }
 
     fun offer(event: TestCaseEvent) {
-        conditionLock.withLock {
-            if (numEventsInWork.get() < 1) {
-                throw IllegalStateException("TestCaseEventQueue.offer can only be called during TestCaseTask.doWork")
+        if (numEventsInWork.get() < 1) {
+            throw IllegalStateException("TestCaseEventQueue.offer can only be called during TestCaseTask.doWork")
+        }
+        val group = add(event, canShareBucket = true)
+        signalDevicesFor(group)
+    }
+
+    private fun signalDevicesFor(group: EventGroup) {
+        waitLock.withLock {
+            waitingDevices.forEach { (device, condition) ->
+                if (group.accepts(device)) {
+                    condition.signal()
+                }
+            }
+        }
+    }
+
+    private fun add(event: TestCaseEvent, canShareBucket: Boolean = true): EventGroup {
+        val key = EligibilityKey(event.testCase.includedDevices, event.excludedDevices)
+        val group = groups[key] ?: createGroup(key, event)
+        group.add(Entry(event, sequence.getAndIncrement(), canShareBucket))
+        return group
+    }
+
+    private fun tryTakeForDevice(device: Device, filter: (Entry) -> Boolean = { true }): TestCaseTask? {
+        // Count the task as being in work before taking it, so that other devices never see the queue as drained
+        // while an event that still can be retried is being handed out
+        numEventsInWork.incrementAndGet()
+        val entry = tryPollForDevice(device, filter)
+        return if (entry != null) {
+            TestCaseTask(entry.event, entry.canShareBucket)
+        } else {
+            finishWork()
+            null
+        }
+    }
+
+    private fun finishWork() {
+        val result = numEventsInWork.decrementAndGet()
+        if (result < 0) {
+            throw IllegalStateException()
+        } else if (result == 0) {
+            waitLock.withLock {
+                waitingDevices.values.forEach { it.signal() }
+            }
+        }
+    }
+
+    private fun tryPollForDevice(device: Device, filter: (Entry) -> Boolean): Entry? {
+        val candidateGroups = groupsFor(device)
+        while (true) {
+            var bestGroup: EventGroup? = null
+            var bestHead: Entry? = null
+            for (group in candidateGroups) {
+                val head = group.firstMatching(filter) ?: continue
+                if (bestHead == null || entryComparator.compare(head, bestHead) < 0) {
+                    bestGroup = group
+                    bestHead = head
+                }
             }
-            list.add(event)
 
-            newItemCondition.signalAll()
+            if (bestGroup == null) {
+                return null
+            }
+            if (bestGroup.remove(bestHead!!)) {
+                return bestHead
+            }
+            // Another device took the entry in the meantime, look again
         }
     }
 
-    private fun tryPollForDevice(device: Device): TestCaseEvent? {
-        return conditionLock.withLock {
-            val itemIndex = indexOfEventFor(device)
-            if (itemIndex != -1) {
-                list.removeAt(itemIndex)
-            } else {
-                null
+    private fun groupsFor(device: Device): List<EventGroup> {
+        return deviceGroups[device] ?: synchronized(groupsLock) {
+            deviceGroups.getOrPut(device) {
+                groups.values.filter { it.accepts(device) }
             }
         }
     }
 
-    private fun indexOfEventFor(device: Device) = list.indexOfFirst { it.isEnabledOn(device) }
+    private fun createGroup(key: EligibilityKey, representative: TestCaseEvent): EventGroup {
+        return synchronized(groupsLock) {
+            groups[key] ?: EventGroup(representative).also { group ->
+                deviceGroups.replaceAll { device, currentGroups ->
+                    if (group.accepts(device)) {
+                        currentGroups + group
+                    } else {
+                        currentGroups
+                    }
+                }
+                groups[key] = group
+            }
+        }
+    }
+
+    private data class EligibilityKey(
+            val includedDevices: Set<Device>?,
+            val excludedDevices: Set<Device>
+    )
+
+    private class Entry(val event: TestCaseEvent, val sequenceNumber: Long, val canShareBucket: Boolean)
+
+    private inner class EventGroup(private val representative: TestCaseEvent) {
+        private val entries = ConcurrentSkipListSet(entryComparator)
+
+        fun accepts(device: Device): Boolean = representative.isEnabledOn(device)
+
+        fun add(entry: Entry) {
+            entries.add(entry)
+        }
+
+        fun firstMatching(filter: (Entry) -> Boolean): Entry? = entries.firstOrNull(filter)
+
+        fun remove(entry: Entry): Boolean = entries.remove(entry)
+
+        fun removeEvent(event: TestCaseEvent): Boolean {
+            val entry = entries.firstOrNull { it.event === event } ?: return false
+            return entries.remove(entry)
+        }
+
+        fun isEmpty(): Boolean = entries.isEmpty()
+    }
+
+    /**
+     * A taken event. It is counted as being in work until [doWork] finishes, so [doWork] must always be called.
+     */
+    inner class TestCaseTask(
+            val testCaseEvent: TestCaseEvent,
+            internal val canShareBucket: Boolean
+    ) {
+        private val isDone = AtomicBoolean()
+
+        val isFinished: Boolean
+            get() = isDone.get()
 
-    inner class TestCaseTask(private val testCaseEvent: TestCaseEvent) {
         fun doWork(block: (testCaseEvent: TestCaseEvent) -> TestCaseRunResult) {
+            if (isDone.getAndSet(true)) {
+                throw IllegalStateException("Work for a task can be done only once")
+            }
             try {
-                numEventsInWork.incrementAndGet()
                 val testCaseResult = block.invoke(testCaseEvent)
                 syncResultsCollection.add(testCaseResult)
             } finally {
-                val result = numEventsInWork.decrementAndGet()
-                if (result < 0) {
-                    throw IllegalStateException()
-                }
+                finishWork()
+            }
+        }
+
+        /**
+         * Puts the event back without a result, so that it is executed again outside of any bucket
+         */
+        fun returnUnfinished() {
+            if (isDone.getAndSet(true)) {
+                throw IllegalStateException("Work for a task can be done only once")
+            }
+            try {
+                val group = add(testCaseEvent, canShareBucket = false)
+                signalDevicesFor(group)
+            } finally {
+                finishWork()
             }
         }
     }
-}
\ No newline at end of file
+}
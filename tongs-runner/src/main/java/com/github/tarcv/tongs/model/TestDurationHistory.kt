@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.model
+
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.google.gson.Gson
+import org.slf4j.LoggerFactory
+import java.io.File
+
+/**
+ * Durations of test cases from previous runs. They are stored next to the output directory,
+ * as the output directory itself is cleaned at the start of each run.
+ */
+class TestDurationHistory(
+        private val historyFile: File,
+        private val gson: Gson
+) {
+    private val durationsMillis: MutableMap<String, Long> = load()
+
+    fun snapshot(): Map<String, Long> = synchronized(durationsMillis) {
+        HashMap(durationsMillis)
+    }
+
+    /**
+     * Records durations of the finished test cases and saves the history for the next run
+     */
+    fun recordAndSave(results: Collection<TestCaseRunResult>) {
+        synchronized(durationsMillis) {
+            results.forEach { result ->
+                val durationMillis = result.timeTakenMillis
+                if (durationMillis > 0) {
+                    // Average with the previous value so that a single slow attempt doesn't reorder a suite
+                    durationsMillis.merge(keyOf(result.testCase), durationMillis) { previous, current ->
+                        (previous + current) / 2
+                    }
+                }
+            }
+
+            try {
+                historyFile.parentFile?.mkdirs()
+                historyFile.writeText(gson.toJson(HistoryJson(HashMap(durationsMillis))), Charsets.UTF_8)
+            } catch (e: Exception) {
+                logger.warn("Failed to save test durations to $historyFile", e)
+            }
+        }
+    }
+
+    private fun load(): MutableMap<String, Long> {
+        if (!historyFile.isFile) {
+            return HashMap()
+        }
+        return try {
+            historyFile.bufferedReader(Charsets.UTF_8).use {
+                HashMap(gson.fromJson(it, HistoryJson::class.java).testDurationsMillis)
+            }
+        } catch (e: Exception) {
+            logger.warn("Failed to read test durations from $historyFile, test cases will be run in the default order", e)
+            HashMap()
+        }
+    }
+
+    private class HistoryJson(val testDurationsMillis: Map<String, Long>)
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(TestDurationHistory::class.java)
+
+        fun keyOf(testCase: TestCase): String = testCase.toString()
+
+        fun historyFileFor(output: File): File {
+            val absoluteOutput = output.absoluteFile
+            return File(absoluteOutput.parentFile, "${absoluteOutput.name}-durations.json")
+        }
+    }
+}
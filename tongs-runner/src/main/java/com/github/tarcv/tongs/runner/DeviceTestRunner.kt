@@ -20,10 +20,14 @@ import com.github.tarcv.tongs.api.result.Delegate
 import com.github.tarcv.tongs.api.result.StackTrace
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.BucketTestCaseRunner
 import com.github.tarcv.tongs.api.run.DeviceRunRuleContext
 import com.github.tarcv.tongs.api.run.DeviceRunRuleFactory
+import com.github.tarcv.tongs.api.run.EarlyResultListener
+import com.github.tarcv.tongs.api.run.ReclaimRequests
 import com.github.tarcv.tongs.api.run.ResultStatus
 import com.github.tarcv.tongs.api.run.TestCaseEvent
+import com.github.tarcv.tongs.api.run.TestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
@@ -60,22 +64,30 @@ class DeviceTestRunner(private val pool: Pool,
     ) {
         try {
             try {
-                while (true) {
-                    val testCaseTask = queueOfTestsInPool.pollForDevice(device, 10)
-                    if (testCaseTask != null) {
-                        testCaseTask.doWork { testCaseEvent: TestCaseEvent ->
-                            val startTimestampUtc = Instant.now()
-                            try {
-                                runEvent(testCaseEvent, startTimestampUtc, progressReporter, queueOfTestsInPool)
-                                        .fixRunResult(testCaseEvent, startTimestampUtc)
-                                        .copy(endTimestampUtc = Instant.now())
-                            } catch (e: Exception) {
-                                fatalErrorResult(testCaseEvent, e, startTimestampUtc)
-                            }
-                        }
-                    } else if (queueOfTestsInPool.hasNoPotentialEventsFor(device)) {
+                val bucketSize = get<Configuration>(Configuration::class.java).testsBucket
+                while (device.isAvailable) {
+                    val tasks = queueOfTestsInPool.pollBucketForDevice(device, bucketSize) { first, other ->
+                        val bucketRunner = bucketRunnerFor(first)
+                        bucketRunner != null && bucketRunner === bucketRunnerFor(other)
+                    }
+                    if (tasks.isEmpty()) {
                         break
                     }
+                    if (!device.isAvailable) {
+                        tasks.forEach { it.returnUnfinished() }
+                        break
+                    }
+
+                    val bucketRunner = bucketRunnerFor(tasks.first().testCaseEvent)
+                    if (tasks.size > 1 && bucketRunner != null) {
+                        runBucket(tasks, bucketRunner, progressReporter, queueOfTestsInPool)
+                    } else {
+                        tasks.forEach { runTask(it, progressReporter, queueOfTestsInPool) }
+                    }
+                }
+                if (!device.isAvailable) {
+                    logger.warn("Device {} is not available anymore, it leaves pool {}", device.serial, pool.name)
+                    failOrphanedEvents(queueOfTestsInPool)
                 }
             } finally {
                 runAfterRules()
@@ -86,12 +98,194 @@ class DeviceTestRunner(private val pool: Pool,
         }
     }
 
+    /**
+     * Reports errors for test cases that were returned to the queue while no available device can execute them,
+     * otherwise they would be left without any result
+     */
+    private fun failOrphanedEvents(queueOfTestsInPool: TestCaseEventQueue) {
+        val availableDevices = pool.devices.filter { it.isAvailable }
+        queueOfTestsInPool.takeEventsNotEnabledOnAny(availableDevices).forEach { task ->
+            logger.error("No available device in pool {} can execute test case {}", pool.name, task.testCaseEvent)
+            task.doWork {
+                fatalErrorResult(it,
+                        IllegalStateException("All devices that could execute the test case became unavailable"),
+                        Instant.now())
+            }
+        }
+    }
+
+    private fun runTask(
+            testCaseTask: TestCaseEventQueue.TestCaseTask,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ) {
+        val testCaseEvent = testCaseTask.testCaseEvent
+        val startTimestampUtc = Instant.now()
+        val result = try {
+            runEvent(testCaseEvent, startTimestampUtc, progressReporter, queueOfTestsInPool)
+                    ?.fixRunResult(testCaseEvent, startTimestampUtc)
+                    ?.copy(endTimestampUtc = Instant.now())
+        } catch (e: Exception) {
+            fatalErrorResult(testCaseEvent, e, startTimestampUtc)
+        }
+
+        if (result == null) {
+            logger.info("Device {} became unavailable, test case {} will be executed on another device",
+                    device.serial, testCaseEvent)
+            testCaseTask.returnUnfinished()
+        } else {
+            testCaseTask.doWork { result }
+        }
+    }
+
+    /**
+     * @return null when the test case errored because the device became unavailable
+     */
     private fun runEvent(
             testCaseEvent: TestCaseEvent,
             startTimestampUtc: Instant,
             progressReporter: ProgressReporter,
             queueOfTestsInPool: TestCaseEventQueue
-    ): TestCaseRunResult {
+    ): TestCaseRunResult? {
+        val preparedEvent = prepareEvent(testCaseEvent, startTimestampUtc, progressReporter, queueOfTestsInPool)
+        val (allowedAfterRules, eitherResult) = preparedEvent.runBeforeRules {
+            val executeContext = preparedEvent.executeContext()
+            preparedEvent.completeResult(runUntilResult(executeContext), executeContext.startTimestampUtc)
+        }
+        val isErrored = eitherResult.getOrNull()?.status.let { it == null || it == ResultStatus.ERROR }
+        if (isErrored && !device.isAvailable) {
+            preparedEvent.releaseUnfinished(allowedAfterRules)
+            return null
+        }
+        return preparedEvent.finishWithAfterRules(allowedAfterRules, eitherResult)
+    }
+
+    /**
+     * Executes several test cases with one call to [bucketRunner]. Rules of all test cases are executed before
+     * the bucket starts, as the test cases share the same run. Test cases that the runner didn't finish are
+     * put back to the queue to be executed separately. Results that the runner reports early are processed
+     * right away, so that they are reported before the whole bucket is finished.
+     */
+    private fun runBucket(
+            tasks: List<TestCaseEventQueue.TestCaseTask>,
+            bucketRunner: BucketTestCaseRunner,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ) {
+        try {
+            val preparedTasks = tasks.map { task ->
+                val preparedEvent = prepareEvent(task.testCaseEvent, Instant.now(), progressReporter, queueOfTestsInPool)
+                val (allowedAfterRules, beforeResult) = preparedEvent.runBeforeRules { }
+                PreparedTask(task, preparedEvent, allowedAfterRules, beforeResult)
+            }
+
+            val readyTasks = preparedTasks.filter { it.beforeResult.isSuccess }
+            val bucketResults: List<Result<TestCaseRunResult?>> = try {
+                val results = bucketRunner.runBucket(readyTasks.map {
+                    it.preparedEvent.runnerArguments(
+                            reclaimRequestsFor(it.task.testCaseEvent, queueOfTestsInPool),
+                            earlyResultsFor(it)
+                    )
+                })
+                check(results.size == readyTasks.size) {
+                    "Bucket runner returned ${results.size} results for ${readyTasks.size} test cases"
+                }
+                results.map { Result.success(it) }
+            } catch (e: Exception) {
+                if (device.isAvailable) {
+                    logger.error("Exception while executing a bucket of test cases", e)
+                    readyTasks.map { Result.failure<TestCaseRunResult?>(e) }
+                } else {
+                    // Test cases that already reported their results keep them, the rest are executed again
+                    logger.warn("Device {} became unavailable while executing a bucket of test cases",
+                            device.serial, e)
+                    readyTasks.map { Result.success<TestCaseRunResult?>(null) }
+                }
+            }
+            val resultsByTask = readyTasks.zip(bucketResults).toMap()
+
+            preparedTasks
+                    .filter { !it.task.isFinished }
+                    .forEach { preparedTask ->
+                        val bucketResult = resultsByTask[preparedTask]
+                                ?: Result.failure(preparedTask.beforeResult.exceptionOrNull()!!)
+                        finishTask(preparedTask, bucketResult)
+                    }
+        } finally {
+            // Never leave taken tasks in work, otherwise other devices would wait for them forever
+            tasks
+                    .filter { !it.isFinished }
+                    .forEach { task ->
+                        task.doWork {
+                            fatalErrorResult(it, IllegalStateException("Bucket execution failed"), Instant.now())
+                        }
+                    }
+        }
+    }
+
+    private fun finishTask(preparedTask: PreparedTask, bucketResult: Result<TestCaseRunResult?>) {
+        val preparedEvent = preparedTask.preparedEvent
+        val runResult = bucketResult.getOrElse { null }
+        if (bucketResult.isSuccess && runResult == null) {
+            logger.info("Test case {} was not finished in its bucket, it will be executed separately",
+                    preparedEvent.testCaseEvent)
+            preparedEvent.releaseUnfinished(preparedTask.allowedAfterRules)
+            preparedTask.task.returnUnfinished()
+        } else {
+            preparedTask.task.doWork { testCaseEvent ->
+                val eitherResult = bucketResult.map {
+                    // Test cases share the bucket time, so prefer the timestamps reported by the runner
+                    val startTimestampUtc = runResult!!.netStartTimestampUtc
+                            ?.takeIf { it != Instant.EPOCH }
+                            ?: preparedEvent.startTimestampUtc
+                    preparedEvent.completeResult(runResult, startTimestampUtc)
+                }
+                val startTimestampUtc = eitherResult.getOrNull()?.startTimestampUtc
+                        ?: preparedEvent.startTimestampUtc
+                try {
+                    preparedEvent.finishWithAfterRules(preparedTask.allowedAfterRules, eitherResult)
+                            .fixRunResult(testCaseEvent, startTimestampUtc)
+                            .copy(endTimestampUtc = Instant.now())
+                } catch (e: Exception) {
+                    fatalErrorResult(testCaseEvent, e, startTimestampUtc)
+                }
+            }
+        }
+    }
+
+    private fun earlyResultsFor(preparedTask: PreparedTask): EarlyResultListener {
+        return object : EarlyResultListener {
+            override fun onResult(result: TestCaseRunResult) {
+                if (!preparedTask.task.isFinished) {
+                    finishTask(preparedTask, Result.success(result))
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets a bucket runner give back test cases it has not started yet when another device runs out of work
+     */
+    private fun reclaimRequestsFor(
+            testCaseEvent: TestCaseEvent,
+            queueOfTestsInPool: TestCaseEventQueue
+    ): ReclaimRequests {
+        return object : ReclaimRequests {
+            override fun isRequested(): Boolean = queueOfTestsInPool.hasWaitingDevicesFor(testCaseEvent)
+        }
+    }
+
+    private fun bucketRunnerFor(testCaseEvent: TestCaseEvent): BucketTestCaseRunner? {
+        // The last added runner is the first one to be tried, see runUntilResult
+        return testCaseEvent.runnersFor(device).lastOrNull() as? BucketTestCaseRunner
+    }
+
+    private fun prepareEvent(
+            testCaseEvent: TestCaseEvent,
+            startTimestampUtc: Instant,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ): PreparedEvent {
         val fileManager by GlobalContext.get().inject<FileManager>()
         val testCaseFileManager: TestCaseFileManager =
      TestCaseFileManagerImpl(fileManager, pool, device, testCaseEvent.testCase)
@@ -113,7 +307,8 @@ class DeviceTestRunner(private val pool: Pool,
                 listOf(
                         AndroidBasicUnlockTestCaseRunRuleFactory(), // must be executed BEFORE any UI actions
                         AndroidCleanupTestCaseRunRuleFactory(),
-                        AndroidPermissionGrantingTestCaseRunRuleFactory() // must be executed AFTER the clean rule
+                        AndroidPermissionGrantingTestCaseRunRuleFactory(), // must be executed AFTER the clean rule
+                        AndroidCommandBatchTestCaseRunRuleFactory() // must be executed AFTER rules above
                 ),
                 { factory, context: TestCaseRunRuleContext -> factory.testCaseRunRules(context) }
         )
@@ -123,60 +318,115 @@ class DeviceTestRunner(private val pool: Pool,
                     pool, device, testCaseEvent, startTimestampUtc)
         }
 
-        val inRuleText = "while executing a test case run rule"
-
-        val (allowedAfterRules, eitherResult) = withRulesWithoutAfter(
-                logger,
-                inRuleText,
-                "while executing a test case",
-                (testRunListeners + testCaseRunRules),
-                { it.before() },
-                {
-                    val executeContext = TestCaseRunRuleContext(
-                            ActualConfiguration(configuration), testCaseFileManager,
-                            pool, device, testCaseEvent, startTimestampUtc)
-
-                    runUntilResult(executeContext)
-                            .let {
-                                it.copy(
-                                        startTimestampUtc = executeContext.startTimestampUtc,
-                                        baseTotalFailureCount = executeContext.testCaseEvent.totalFailureCount,
-                                        additionalProperties = combineProperties(executeContext.testCaseEvent, it.additionalProperties)
-                                )
-                            }
-                            .fixRunResult(testCaseEvent, startTimestampUtc)
-                }
-        )
+        return PreparedEvent(testCaseEvent, startTimestampUtc, testCaseFileManager, configuration,
+                testRunListeners, testCaseRunRules)
+    }
 
-        val fixedResult = eitherResult
-                .getOrElse { e ->
-                    logger.error("Exception while executing a test case", e)
-                    fatalErrorResult(testCaseEvent, e, startTimestampUtc)
-                }
+    private inner class PreparedEvent(
+            val testCaseEvent: TestCaseEvent,
+            val startTimestampUtc: Instant,
+            private val testCaseFileManager: TestCaseFileManager,
+            private val configuration: Configuration,
+            private val testRunListeners: List<TestCaseRunRule>,
+            private val testCaseRunRules: List<TestCaseRunRule>
+    ) {
+        private val inRuleText = "while executing a test case run rule"
 
-        return allowedAfterRules
-                .asReversed()
-                .fold(fixedResult) { acc, rule ->
-                    try {
-                        val args = TestCaseRunRuleAfterArguments(acc)
-
-                        rule.after(args)
-                        args.result
-                                .fixRunResult(
-                                    testCaseEvent,
-                                    startTimestampUtc
-                                )
-                    } catch (e: Exception) {
-                        val header = "Exception ${inRuleText} (after)"
-                        val newStackTrace = "$header: ${traceAsString(e)}"
-                        acc.copy(
-                                status = ResultStatus.ERROR,
-                                stackTraces = acc.stackTraces + StackTrace("RuleException", header, newStackTrace)
-                        )
+        fun <V> runBeforeRules(block: () -> V): Pair<List<TestCaseRunRule>, Result<V>> {
+            return withRulesWithoutAfter(
+                    logger,
+                    inRuleText,
+                    "while executing a test case",
+                    (testRunListeners + testCaseRunRules),
+                    { it.before() },
+                    block
+            )
+        }
+
+        fun executeContext(): TestCaseRunRuleContext {
+            return TestCaseRunRuleContext(
+                    ActualConfiguration(configuration), testCaseFileManager,
+                    pool, device, testCaseEvent, startTimestampUtc)
+        }
+
+        fun runnerArguments(
+                reclaimRequests: ReclaimRequests,
+                earlyResults: EarlyResultListener
+        ): TestCaseRunnerArguments {
+            return TestCaseRunnerArguments(testCaseFileManager, testCaseEvent, startTimestampUtc,
+                    reclaimRequests, earlyResults)
+        }
+
+        fun completeResult(result: TestCaseRunResult, startTimestampUtc: Instant): TestCaseRunResult {
+            return result
+                    .copy(
+                            startTimestampUtc = startTimestampUtc,
+                            baseTotalFailureCount = testCaseEvent.totalFailureCount,
+                            additionalProperties = combineProperties(testCaseEvent, result.additionalProperties)
+                    )
+                    .fixRunResult(testCaseEvent, startTimestampUtc)
+        }
+
+        fun finishWithAfterRules(
+                allowedAfterRules: List<TestCaseRunRule>,
+                eitherResult: Result<TestCaseRunResult>
+        ): TestCaseRunResult {
+            val fixedResult = eitherResult
+                    .getOrElse { e ->
+                        logger.error("Exception while executing a test case", e)
+                        fatalErrorResult(testCaseEvent, e, startTimestampUtc)
                     }
-                }
+
+            return allowedAfterRules
+                    .asReversed()
+                    .fold(fixedResult) { acc, rule ->
+                        try {
+                            val args = TestCaseRunRuleAfterArguments(acc)
+
+                            rule.after(args)
+                            args.result
+                                    .fixRunResult(
+                                        testCaseEvent,
+                                        startTimestampUtc
+                                    )
+                        } catch (e: Exception) {
+                            val header = "Exception ${inRuleText} (after)"
+                            val newStackTrace = "$header: ${traceAsString(e)}"
+                            acc.copy(
+                                    status = ResultStatus.ERROR,
+                                    stackTraces = acc.stackTraces + StackTrace("RuleException", header, newStackTrace)
+                            )
+                        }
+                    }
+        }
+
+        /**
+         * Restores the device state for a test case that got no result. Listeners are skipped,
+         * as the test case is going to be reported when it is executed again.
+         */
+        fun releaseUnfinished(allowedAfterRules: List<TestCaseRunRule>) {
+            val placeholderResult = fatalErrorResult(testCaseEvent,
+                    IllegalStateException("Test case was not finished"), startTimestampUtc)
+            allowedAfterRules
+                    .filter { rule -> testCaseRunRules.any { it === rule } }
+                    .asReversed()
+                    .forEach {
+                        try {
+                            it.after(TestCaseRunRuleAfterArguments(placeholderResult))
+                        } catch (e: Exception) {
+                            logger.warn("Exception $inRuleText (after)", e)
+                        }
+                    }
+        }
     }
 
+    private class PreparedTask(
+            val task: TestCaseEventQueue.TestCaseTask,
+            val preparedEvent: PreparedEvent,
+            val allowedAfterRules: List<TestCaseRunRule>,
+            val beforeResult: Result<Unit>
+    )
+
     private fun fatalErrorResult(testCaseEvent: TestCaseEvent, error: Throwable, startTimestampUtc: Instant): TestCaseRunResult {
         return TestCaseRunResult(
                 pool, device,
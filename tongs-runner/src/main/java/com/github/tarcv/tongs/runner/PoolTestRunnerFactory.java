@@ -14,6 +14,7 @@ package com.github.tarcv.tongs.runner;
 import com.github.tarcv.tongs.TongsRunner;
 import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.injector.RuleManagerFactory;
+import com.github.tarcv.tongs.model.TestCaseEventOrdering;
 import com.github.tarcv.tongs.model.TestCaseEventQueue;
 
 import java.util.List;
@@ -22,11 +23,14 @@ import java.util.concurrent.CountDownLatch;
 public class PoolTestRunnerFactory {
     private final DeviceTestRunnerFactory deviceTestRunnerFactory;
     private final RuleManagerFactory ruleManagerFactory;
+    private final TestCaseEventOrdering testCaseEventOrdering;
 
     public PoolTestRunnerFactory(DeviceTestRunnerFactory deviceTestRunnerFactory,
-                                 RuleManagerFactory ruleManagerFactory) {
+                                 RuleManagerFactory ruleManagerFactory,
+                                 TestCaseEventOrdering testCaseEventOrdering) {
         this.deviceTestRunnerFactory = deviceTestRunnerFactory;
         this.ruleManagerFactory = ruleManagerFactory;
+        this.testCaseEventOrdering = testCaseEventOrdering;
     }
 
     public Runnable createPoolTestRunner(TongsRunner.PoolTask poolTask,
@@ -39,7 +43,7 @@ public class PoolTestRunnerFactory {
         return new PoolTestRunner(
                 deviceTestRunnerFactory,
                 poolTask,
-                new TestCaseEventQueue(poolTask.getTestCases(), testCaseResults),
+                new TestCaseEventQueue(poolTask.getTestCases(), testCaseResults, testCaseEventOrdering),
                 poolCountDownLatch,
                 progressReporter,
                 ruleManagerFactory);
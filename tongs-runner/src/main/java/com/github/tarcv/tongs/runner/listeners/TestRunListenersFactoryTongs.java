@@ -21,6 +21,7 @@ import com.github.tarcv.tongs.device.DeviceTestFilesCleanerImpl;
 import com.github.tarcv.tongs.model.TestCaseEventQueue;
 import com.github.tarcv.tongs.runner.ProgressReporter;
 import com.github.tarcv.tongs.runner.TestRetryerImpl;
+import com.github.tarcv.tongs.summary.XmlResultWriter;
 import com.github.tarcv.tongs.system.io.FileManager;
 
 import java.util.ArrayList;
@@ -33,6 +34,7 @@ public class TestRunListenersFactoryTongs {
 
     private final Configuration configuration;
     private final FileManager fileManager;
+    private final XmlResultWriter xmlResultWriter = new XmlResultWriter();
 
     public TestRunListenersFactoryTongs(Configuration configuration,
                                         FileManager fileManager) {
@@ -52,7 +54,9 @@ public class TestRunListenersFactoryTongs {
                 new ConsoleLoggingTestRunListener(configuration.getTestPackage(), testIdentifier, device.getSerial(),
                         device.getModelName(), progressReporter),
                 new SlowWarningTestRunListener(testIdentifier),
-                buildRetryListener(testCase, device, pool, progressReporter, testCaseEventQueue)
+                buildRetryListener(testCase, device, pool, progressReporter, testCaseEventQueue),
+                // After rules are executed in reverse order, so the file is written before the retry listener runs
+                new XmlResultTestRunListener(fileManager, xmlResultWriter)
         );
         if (tongsIntegrationTestRunType == TongsConfiguration.TongsIntegrationTestRunType.RECORD_LISTENER_EVENTS) {
             ArrayList<TongsTestListener> testListeners = new ArrayList<>(normalListeners);
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.github.tarcv.tongs.api.result.StandardFileTypes
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
+import com.github.tarcv.tongs.summary.XmlResultWriter
+import com.github.tarcv.tongs.system.io.FileManager
+import org.slf4j.LoggerFactory
+
+/**
+ * Writes the JUnit XML file of a test case as soon as its result is known, so that CI can pick up results
+ * while the run is still going. [RetryListener] deletes the file again when the test case is going to be retried,
+ * so this listener should be added after it.
+ */
+class XmlResultTestRunListener(
+        private val fileManager: FileManager,
+        private val xmlResultWriter: XmlResultWriter
+) : TongsTestListener() {
+    override fun after(arguments: TestCaseRunRuleAfterArguments) {
+        val result = arguments.result
+        try {
+            val file = fileManager.createFile(StandardFileTypes.TEST, result.pool, result.device, result.testCase)
+            xmlResultWriter.writeXml(file, result)
+        } catch (e: Exception) {
+            logger.warn("Failed to write the XML result for {}", result.testCase, e)
+        }
+    }
+
+    override fun onTestStarted() {
+        // no op
+    }
+
+    override fun onTestSuccessful() {
+        // no op
+    }
+
+    override fun onTestSkipped(skipResult: TestCaseRunResult) {
+        // no op
+    }
+
+    override fun onTestFailed(failureResult: TestCaseRunResult) {
+        // no op
+    }
+
+    override fun onTestAssumptionFailure(skipResult: TestCaseRunResult) {
+        // no op
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(XmlResultTestRunListener::class.java)
+    }
+}
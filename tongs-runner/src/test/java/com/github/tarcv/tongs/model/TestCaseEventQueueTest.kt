@@ -20,6 +20,7 @@ import com.github.tarcv.tongs.api.testcases.aTestCase
 import org.junit.Assert
 import org.junit.Test
 import java.lang.Thread.sleep
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.atomic.AtomicReference
 import kotlin.concurrent.thread
 
@@ -82,17 +83,19 @@ class TestCaseEventQueueTest {
         val queue = TestCaseEventQueue(listOf(
                 test1
         ), mutableListOf())
+        val test1Taken = CountDownLatch(1)
         thread(start = true) {
-            sleep(100)
-
-            try {
+            queue.pollForDevice(device2)!!.doWork {
+                test1Taken.countDown()
+                sleep(100)
                 queue.offer(test2)
-            } catch (_: IllegalStateException) {
-                // intentional no-op
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList<StackTrace>())
             }
         }
 
         withTimeout {
+            test1Taken.await()
             queue.pollForDevice(device1)!!.doWork {
                 Assert.assertEquals(test2, it)
 
@@ -100,6 +103,213 @@ class TestCaseEventQueueTest {
             }
         }
     }
+
+    @Test
+    fun testWaitingDeviceIsReleasedWhenWorkIsFinished() {
+        val test1 = createTestCaseEvent("test1", listOf(device1))
+        val queue = TestCaseEventQueue(listOf(
+                test1
+        ), mutableListOf())
+        val test1Taken = CountDownLatch(1)
+        thread(start = true) {
+            queue.pollForDevice(device2)!!.doWork {
+                test1Taken.countDown()
+                sleep(100)
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList<StackTrace>())
+            }
+        }
+
+        withTimeout {
+            test1Taken.await()
+            Assert.assertNull(queue.pollForDevice(device1))
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+        }
+    }
+
+    @Test
+    fun testWaitingDevicesAndRemoval() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", listOf(device1))
+        val test3 = createTestCaseEvent("test3", emptyList())
+        val queue = TestCaseEventQueue(listOf(
+                test1,
+                test2
+        ), mutableListOf())
+        val test1Taken = CountDownLatch(1)
+        val test1Release = CountDownLatch(1)
+        thread(start = true) {
+            queue.pollForDevice(device2)!!.doWork {
+                test1Taken.countDown()
+                test1Release.await()
+
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+        }
+
+        withTimeout {
+            test1Taken.await()
+            Assert.assertFalse(queue.hasWaitingDevicesFor(test3))
+
+            val device1Result = AtomicReference<TestCaseEventQueue.TestCaseTask?>()
+            val device1Thread = thread(start = true) {
+                device1Result.set(queue.pollForDevice(device1))
+            }
+            while (!queue.hasWaitingDevicesFor(test3)) {
+                sleep(10)
+            }
+            Assert.assertFalse(queue.hasWaitingDevicesFor(test2))
+
+            Assert.assertTrue(queue.remove(test2))
+            Assert.assertFalse(queue.remove(test2))
+
+            test1Release.countDown()
+            device1Thread.join()
+            Assert.assertNull(device1Result.get())
+            Assert.assertFalse(queue.hasWaitingDevicesFor(test3))
+        }
+    }
+
+    @Test
+    fun testOfferedEventWithNewExcludes() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val queue = TestCaseEventQueue(listOf(
+                test1
+        ), mutableListOf())
+        withTimeout {
+            queue.pollForDevice(device1)!!.doWork {
+                queue.offer(TestCaseEvent(it.testCase, listOf(device1), 1))
+
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.FAIL, emptyList())
+            }
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+            Assert.assertFalse(queue.hasNoPotentialEventsFor(device2))
+
+            queue.pollForDevice(device2)!!.doWork {
+                Assert.assertEquals(test1, it)
+                Assert.assertEquals(1, it.totalFailureCount)
+
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device2))
+        }
+    }
+
+    @Test
+    fun testBucketOfCompatibleEvents() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", emptyList())
+        val test3 = createTestCaseEvent("test3", emptyList())
+        val queue = TestCaseEventQueue(listOf(
+                test1,
+                test2,
+                test3
+        ), mutableListOf())
+        withTimeout {
+            val bucket = queue.pollBucketForDevice(device1, 3) { _, other -> other != test2 }
+            Assert.assertEquals(listOf(test1, test3), bucket.map { it.testCaseEvent })
+
+            bucket.first().returnUnfinished()
+            bucket.last().doWork {
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+
+            // Events returned from a bucket are executed alone
+            val nextBucket = queue.pollBucketForDevice(device1, 3) { _, _ -> true }
+            Assert.assertEquals(listOf(test2), nextBucket.map { it.testCaseEvent })
+            nextBucket.single().doWork {
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+
+            val lastBucket = queue.pollBucketForDevice(device1, 3) { _, _ -> true }
+            Assert.assertEquals(listOf(test1), lastBucket.map { it.testCaseEvent })
+            lastBucket.single().doWork {
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+            Assert.assertTrue(queue.pollBucketForDevice(device1, 3) { _, _ -> true }.isEmpty())
+        }
+    }
+
+    @Test
+    fun testUnfinishedEventIsExecutedOnAnotherDevice() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val results = mutableListOf<TestCaseRunResult>()
+        val queue = TestCaseEventQueue(listOf(
+                test1
+        ), results)
+        withTimeout {
+            // device1 became unavailable in the middle of the test case
+            queue.pollForDevice(device1)!!.returnUnfinished()
+
+            queue.pollForDevice(device2)!!.doWork {
+                Assert.assertEquals(test1, it)
+
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device2))
+            Assert.assertEquals(1, results.size)
+        }
+    }
+
+    @Test
+    fun testEventsNoAvailableDeviceCanExecute() {
+        val test1 = createTestCaseEvent("test1", listOf(device2))
+        val test2 = createTestCaseEvent("test2", emptyList())
+        val queue = TestCaseEventQueue(listOf(
+                test1,
+                test2
+        ), mutableListOf())
+        withTimeout {
+            // device1 became unavailable in the middle of the test case, and test1 is excluded on device2
+            queue.pollForDevice(device1)!!.returnUnfinished()
+
+            val orphanedTasks = queue.takeEventsNotEnabledOnAny(listOf(device2))
+            Assert.assertEquals(listOf(test1), orphanedTasks.map { it.testCaseEvent })
+            orphanedTasks.single().doWork {
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.ERROR, emptyList())
+            }
+
+            queue.pollForDevice(device2)!!.doWork {
+                Assert.assertEquals(test2, it)
+
+                TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+            }
+            Assert.assertNull(queue.pollForDevice(device2))
+            Assert.assertTrue(queue.takeEventsNotEnabledOnAny(emptyList()).isEmpty())
+        }
+    }
+
+    @Test
+    fun testLongestExpectedFirst() {
+        val shortTest = createTestCaseEvent("shortTest", emptyList())
+        val unknownTest = createTestCaseEvent("unknownTest", emptyList())
+        val mediumTest = createTestCaseEvent("mediumTest", emptyList())
+        val longTest = createTestCaseEvent("longTest", emptyList())
+        val ordering = LongestExpectedFirstOrdering(mapOf(
+                TestDurationHistory.keyOf(shortTest.testCase) to 1_000L,
+                TestDurationHistory.keyOf(mediumTest.testCase) to 5_000L,
+                TestDurationHistory.keyOf(longTest.testCase) to 60_000L
+        ))
+        val queue = TestCaseEventQueue(listOf(
+                shortTest,
+                mediumTest,
+                unknownTest,
+                longTest
+        ), mutableListOf(), ordering)
+        withTimeout {
+            val handedOut = (1..4).map {
+                var event: TestCaseEvent? = null
+                queue.pollForDevice(device1)!!.doWork {
+                    event = it
+                    TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList())
+                }
+                event
+            }
+
+            // A test case without history is expected to take the median of known durations
+            Assert.assertEquals(listOf(longTest, mediumTest, unknownTest, shortTest), handedOut)
+        }
+    }
 }
 
 private fun withTimeout(block: () -> Unit) {